@@ -8,11 +8,14 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 import clientSide.entities.ParkVisitor;
 import clientSide.gui.GoNatureClientUI;
 import clientSide.gui.RescheduleScreenController.AvailableSlot;
 import common.communication.Communication;
+import common.communication.Communication.AggregateFunction;
 import common.communication.Communication.CommunicationType;
 import common.communication.Communication.NotificationType;
 import common.communication.Communication.QueryType;
@@ -221,7 +224,7 @@ public class BookingController {
 
 		String tableName = parkControl.nameOfTable(newBooking.getParkBooked()) + Communication.activeBookings;
 		checkAndInsert.setTables(Arrays.asList(tableName));
-		checkAndInsert.setSelectColumns(Arrays.asList("numberOfVisitors"));
+		checkAndInsert.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
 		checkAndInsert.setWhereConditions(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"),
 				Arrays.asList("=", "AND", ">", "AND", "<"),
 				Arrays.asList(newBooking.getDayOfVisit(), newBooking.getTimeOfVisit().minusHours(timeLimit),
@@ -312,11 +315,13 @@ public class BookingController {
 		String parkTableName = parkControl.nameOfTable(park) + availabilityRequest.activeBookings;
 
 		availabilityRequest.setTables(Arrays.asList(parkTableName));
-		availabilityRequest.setSelectColumns(Arrays.asList("numberOfVisitors"));
+		availabilityRequest.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
 		availabilityRequest.setWhereConditions(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"),
 				Arrays.asList("=", "AND", ">", "AND", "<"),
 				Arrays.asList(date, time.minusHours(timeLimit), time.plusHours(timeLimit)));
 		availabilityRequest.setCritical(true, park.getParkId() - 1);
+		// letting the server answer from its occupancy timeline
+		availabilityRequest.setSecondaryRequest(SecondaryRequest.COUNT_VISITORS_IN_TIME_FRAME);
 
 		// sending the request to the server side
 		GoNatureClientUI.client.accept(availabilityRequest);
@@ -325,7 +330,7 @@ public class BookingController {
 		int countVisitors = 0;
 		// checking the orders amount for the specific time
 		for (Object[] row : availabilityRequest.getResultList()) {
-			countVisitors += (Integer) row[0];
+			countVisitors += ((Number) row[0]).intValue();
 		}
 
 		return countVisitors;
@@ -447,80 +452,120 @@ public class BookingController {
 	 *                     tables
 	 * @return the bookings list
 	 */
-	@SuppressWarnings("static-access")
 	public ObservableList<Booking> getVisitorBookings(ParkVisitor visitorCheck, String tableEnding) {
-		ObservableList<Booking> returnList = FXCollections.observableArrayList();
+		return getVisitorBookings(visitorCheck, Arrays.asList(tableEnding)).get(tableEnding);
+	}
+
+	/**
+	 * This method gets a visitor and returns all his bookings in all parks, from
+	 * several tables at once. The selections of all the parks and tables are sent
+	 * to the server side as a single batch request.
+	 * 
+	 * @param visitorCheck
+	 * @param tableEndings determines the active/cancelled/done/waiting list tables
+	 *                     to check in
+	 * @return the bookings lists, mapped by their table ending
+	 */
+	public HashMap<String, ObservableList<Booking>> getVisitorBookings(ParkVisitor visitorCheck,
+			List<String> tableEndings) {
+		HashMap<String, ObservableList<Booking>> returnLists = new HashMap<>();
 		// creating the requests for the bookings retrieval
 		if (parkList == null)
 			fetchParks();
-		for (Park park : parkList) {
-			String tableName = parkControl.nameOfTable(park) + tableEnding;
-			Communication availabilityRequest = new Communication(CommunicationType.QUERY_REQUEST);
-			try {
-				availabilityRequest.setQueryType(QueryType.SELECT);
-			} catch (CommunicationException e) {
-				e.printStackTrace();
+		Communication batchRequest = new Communication(CommunicationType.BATCH);
+		for (String tableEnding : tableEndings) {
+			returnLists.put(tableEnding, FXCollections.observableArrayList());
+			for (Park park : parkList) {
+				String tableName = parkControl.nameOfTable(park) + tableEnding;
+				Communication selectRequest = new Communication(CommunicationType.QUERY_REQUEST);
+				try {
+					selectRequest.setQueryType(QueryType.SELECT);
+				} catch (CommunicationException e) {
+					e.printStackTrace();
+				}
+				selectRequest.setTables(Arrays.asList(tableName));
+				selectRequest.setSelectColumns(Arrays.asList("*"));
+				selectRequest.setWhereConditions(Arrays.asList("idNumber"), Arrays.asList("="),
+						Arrays.asList(visitorCheck.getIdNumber()));
+				batchRequest.addRequestToList(selectRequest);
 			}
-			availabilityRequest.setTables(Arrays.asList(tableName));
-			availabilityRequest.setSelectColumns(Arrays.asList("*"));
-			availabilityRequest.setWhereConditions(Arrays.asList("idNumber"), Arrays.asList("="),
-					Arrays.asList(visitorCheck.getIdNumber()));
-			// sending the request to the server side
-			GoNatureClientUI.client.accept(availabilityRequest);
-			// getting the result from the server side
-			if (!availabilityRequest.getResultList().isEmpty()) {
-				for (Object[] row : availabilityRequest.getResultList()) {
-					Booking addBooking;
-
-					// if this is the active booking table to check in
-					if (tableEnding == availabilityRequest.activeBookings) {
-						addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
-								((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
-								((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
-								(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
-								(String) row[10], (Integer) row[11], (Integer) row[12] == 0 ? false : true,
-								(Integer) row[13] == 0 ? false : true,
-								((Time) row[14]) == null ? null : ((Time) row[14]).toLocalTime(),
-								((Time) row[15]) == null ? null : ((Time) row[15]).toLocalTime(),
-								(Integer) row[16] == 0 ? false : true,
-								((Time) row[17]) == null ? null : ((Time) row[17]).toLocalTime(), park);
-						addBooking.setStatus("Active");
-
-					} else if (tableEnding == availabilityRequest.cancelledBookings) {
-						// if this is the cancelled booking table to check in
-						addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
-								((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
-								((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
-								(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
-								(String) row[10], -1, false, false, null, null, false, null, park);
-						addBooking.setStatus("Cancelled");
-
-					} else if (tableEnding == availabilityRequest.doneBookings) {
-						// if this is the done booking table to check in
-						addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
-								((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
-								((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
-								(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
-								(String) row[10], (Integer) row[11], true, false,
-								((Time) row[12]) == null ? null : ((Time) row[12]).toLocalTime(),
-								((Time) row[13]) == null ? null : ((Time) row[13]).toLocalTime(), false, null, park);
-						addBooking.setStatus("Finished");
-
-					} else {
-						// if this is the waiting list table to check in
-						addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
-								((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
-								((String) row[5]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
-								(Integer) row[6], (String) row[7], (String) row[8], (String) row[9], (String) row[10],
-								(String) row[11], (Integer) row[12], false, false, null, null, false, null, park);
-						addBooking.setWaitingListPriority((Integer) row[4]);
-						addBooking.setStatus("Waiting List");
-					}
-					returnList.add(addBooking);
+		}
+		// sending the request to the server side
+		GoNatureClientUI.client.accept(batchRequest);
+
+		// getting the results from the server side, by the order of the requests
+		int requestIndex = 0;
+		for (String tableEnding : tableEndings) {
+			for (Park park : parkList) {
+				ArrayList<Object[]> resultList = batchRequest.getRequestsList().get(requestIndex++).getResultList();
+				if (resultList == null)
+					continue;
+				for (Object[] row : resultList) {
+					returnLists.get(tableEnding).add(rowToBooking(row, tableEnding, park));
 				}
 			}
 		}
-		return returnList;
+		return returnLists;
+	}
+
+	/**
+	 * This method creates a booking from a row of one of the park's bookings
+	 * tables
+	 * 
+	 * @param row         the row from the database
+	 * @param tableEnding determines if the row is from the
+	 *                    active/cancelled/done/waiting list table
+	 * @param park        the park of the table
+	 * @return the booking
+	 */
+	private Booking rowToBooking(Object[] row, String tableEnding, Park park) {
+		Booking addBooking;
+
+		// if this is the active booking table to check in
+		if (tableEnding.equals(Communication.activeBookings)) {
+			addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
+					((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
+					((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
+					(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
+					(String) row[10], (Integer) row[11], (Integer) row[12] == 0 ? false : true,
+					(Integer) row[13] == 0 ? false : true,
+					((Time) row[14]) == null ? null : ((Time) row[14]).toLocalTime(),
+					((Time) row[15]) == null ? null : ((Time) row[15]).toLocalTime(),
+					(Integer) row[16] == 0 ? false : true,
+					((Time) row[17]) == null ? null : ((Time) row[17]).toLocalTime(), park);
+			addBooking.setStatus("Active");
+
+		} else if (tableEnding.equals(Communication.cancelledBookings)) {
+			// if this is the cancelled booking table to check in
+			addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
+					((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
+					((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
+					(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
+					(String) row[10], -1, false, false, null, null, false, null, park);
+			addBooking.setStatus("Cancelled");
+
+		} else if (tableEnding.equals(Communication.doneBookings)) {
+			// if this is the done booking table to check in
+			addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
+					((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
+					((String) row[4]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
+					(Integer) row[5], (String) row[6], (String) row[7], (String) row[8], (String) row[9],
+					(String) row[10], (Integer) row[11], true, false,
+					((Time) row[12]) == null ? null : ((Time) row[12]).toLocalTime(),
+					((Time) row[13]) == null ? null : ((Time) row[13]).toLocalTime(), false, null, park);
+			addBooking.setStatus("Finished");
+
+		} else {
+			// if this is the waiting list table to check in
+			addBooking = new Booking((String) row[0], ((Date) row[1]).toLocalDate(),
+					((Time) row[2]).toLocalTime(), ((Date) row[3]).toLocalDate(),
+					((String) row[5]).equals("group") ? VisitType.GROUP : VisitType.INDIVIDUAL,
+					(Integer) row[6], (String) row[7], (String) row[8], (String) row[9], (String) row[10],
+					(String) row[11], (Integer) row[12], false, false, null, null, false, null, park);
+			addBooking.setWaitingListPriority((Integer) row[4]);
+			addBooking.setStatus("Waiting List");
+		}
+		return addBooking;
 	}
 
 	/**
@@ -697,7 +742,8 @@ public class BookingController {
 
 	/**
 	 * This method is used for showing all the slots available in a specific park
-	 * for date range
+	 * for date range. The whole range is checked by the server side in a single
+	 * request, using the active bookings of the park in the range
 	 * 
 	 * @param parkBooked the relevant park
 	 * @param fromDate   starts from
@@ -706,76 +752,43 @@ public class BookingController {
 	public ArrayList<AvailableSlot> getParkAvailabilitySlots(Booking newBooking, LocalDate fromDate, LocalDate toDate) {
 		// setting the data structure
 		ArrayList<AvailableSlot> available = new ArrayList<>();
-		// running toDate - fromDate times (days)
-		for (LocalDate start = fromDate; start.compareTo(toDate) <= 0; start = start.plusDays(1)) {
-			// running closeHour - openHours times (hours)
-			for (int hour = openHour; hour <= closeHour; hour++) {
-				// if the hour has minutes intervals
-				if (minutes == 0) {
-					AvailableSlot slot = new AvailableSlot(
-							LocalDate.of(start.getYear(), start.getMonth(), start.getDayOfMonth()),
-							LocalTime.of(hour, 0));
-					if (isSpecificTimeAvailable(newBooking.getParkBooked(), slot, newBooking.getNumberOfVisitors())) {
-						available.add(slot);
-					}
-				} else {
-					for (int minute = 0; minute < 60; minute += minutes) {
-						AvailableSlot slot = new AvailableSlot(
-								LocalDate.of(start.getYear(), start.getMonth(), start.getDayOfMonth()),
-								LocalTime.of(hour, minute));
-						if (isSpecificTimeAvailable(newBooking.getParkBooked(), slot,
-								newBooking.getNumberOfVisitors())) {
-							available.add(slot);
-						}
-					}
-				}
-			}
-		}
 
-		return available;
-	}
-
-	/**
-	 * Thus method gets a time slot to check its availability in a specific park
-	 * 
-	 * @param parkToCheck
-	 * @param slot
-	 * @param numberOfVisitors
-	 * @return true if available, false if not
-	 */
-	private boolean isSpecificTimeAvailable(Park parkToCheck, AvailableSlot slot, int numberOfVisitors) {
-		// pre-setting data for request
+		// creating the request for the availability scan
 		Communication availabilityRequest = new Communication(CommunicationType.QUERY_REQUEST);
-		@SuppressWarnings("static-access")
-		String parkTableName = parkControl.nameOfTable(parkToCheck) + availabilityRequest.activeBookings;
-		// the pair holds the maximum orders amount, and maximum time limit parameters
-		Pair<Integer, Integer> pair = getParkUpdatedParameters(parkToCheck);
-		int parkTimeLimit = pair.getValue();
-
-		// creating the request for the availability check
 		try {
 			availabilityRequest.setQueryType(QueryType.SELECT);
 		} catch (CommunicationException e) {
 			e.printStackTrace();
 		}
-
+		String parkTableName = parkControl.nameOfTable(newBooking.getParkBooked()) + Communication.activeBookings;
 		availabilityRequest.setTables(Arrays.asList(parkTableName));
-		availabilityRequest.setSelectColumns(Arrays.asList("numberOfVisitors"));
-		availabilityRequest.setWhereConditions(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"),
-				Arrays.asList("=", "AND", ">", "AND", "<"), Arrays.asList(slot.getDate(),
-						slot.getTime().minusHours(parkTimeLimit), slot.getTime().plusHours(parkTimeLimit)));
+		// the visitors are summed by the database for each booked slot
+		availabilityRequest.setSelectColumns(Arrays.asList("dayOfVisit", "timeOfVisit"));
+		availabilityRequest.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
+		availabilityRequest.setGroupByColumns(Arrays.asList("dayOfVisit", "timeOfVisit"));
+		availabilityRequest.setWhereConditions(Arrays.asList("dayOfVisit", "dayOfVisit"),
+				Arrays.asList(">=", "AND", "<="), Arrays.asList(fromDate, toDate));
+
+		// secondary request
+		// the server side checks every slot in the range against the selected bookings
+		// and returns the available slots instead of the bookings
+		availabilityRequest.setSecondaryRequest(SecondaryRequest.AVAILABLE_SLOTS);
+		availabilityRequest.setParkId(newBooking.getParkBooked().getParkId());
+		availabilityRequest.setNumberOfVisitors(newBooking.getNumberOfVisitors());
+		availabilityRequest.setDayOfVisit(fromDate);
+		availabilityRequest.setAvailabilityRange(toDate, openHour, closeHour, minutes);
 
 		// sending the request to the server side
 		GoNatureClientUI.client.accept(availabilityRequest);
 
-		// getting the result from the database
-		int countVisitors = 0;
-		// checking the orders amount for the specific time
-		for (Object[] row : availabilityRequest.getResultList()) {
-			countVisitors += (Integer) row[0];
+		// getting the result from the server side
+		if (availabilityRequest.getResultList() != null) {
+			for (Object[] row : availabilityRequest.getResultList()) {
+				available.add(new AvailableSlot((LocalDate) row[0], (LocalTime) row[1]));
+			}
 		}
-		// checking park parameters
-		return pair.getKey() - countVisitors - numberOfVisitors >= 0;
+
+		return available;
 	}
 
 	//////////////////////////////////////////////////////
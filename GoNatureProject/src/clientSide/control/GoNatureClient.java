@@ -2,26 +2,87 @@ package clientSide.control;
 
 import java.io.IOException;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import common.communication.Communication;
 import common.communication.Communication.ClientMessageType;
 import common.communication.Communication.CommunicationType;
 import common.communication.Communication.QueryType;
+import common.communication.Communication.SecondaryRequest;
 import common.communication.Communication.ServerMessageType;
+import common.communication.CommunicationCodec;
+import common.communication.WireCompression;
 import ocsf.client.AbstractClient;
 
 public class GoNatureClient extends AbstractClient {
-	public static boolean awaitResponse = false;
 	/**
 	 * This map holds all the requests that have been sent to the server side and
 	 * have not recieved a response. The mapping is by the unique id of each
 	 * communication object.
 	 */
 	private ConcurrentHashMap<String, Communication> awaitingRequests = new ConcurrentHashMap<>();
+	/**
+	 * This map holds the futures of the awaiting requests, completed when their
+	 * responses arrive. The mapping is by the unique id of each communication
+	 * object.
+	 */
+	private ConcurrentHashMap<String, CompletableFuture<Communication>> awaitingResponses = new ConcurrentHashMap<>();
+	/**
+	 * This map holds the streams of the awaiting streamed requests, filled with
+	 * the chunks of their responses. The mapping is by the unique id of each
+	 * communication object.
+	 */
+	private ConcurrentHashMap<String, ResultStream> awaitingStreams = new ConcurrentHashMap<>();
+	/**
+	 * This map holds the listeners of the topics the client is subscribed to, each
+	 * called with the messages pushed by the server on its topic.
+	 */
+	private ConcurrentHashMap<String, CopyOnWriteArrayList<Consumer<Communication>>> subscriptions = new ConcurrentHashMap<>();
+	/**
+	 * The version of the Communication codec agreed on with the server when
+	 * connecting, 0 if the messages are sent with Java serialization
+	 */
+	private volatile int codecVersion = 0;
+	// set to true if the server agreed on compressing the large messages
+	private volatile boolean isCompressing = false;
+	private WireCompression compression = new WireCompression();
+	private static final long negotiationTimeout = 3; // seconds
+	/**
+	 * This map holds the number of times each awaiting request was rejected by a
+	 * busy server. A rejected request is sent again after a random delay, up to a
+	 * backoff doubled for every rejection, so the retries of many clients are
+	 * spread over time. The mapping is by the unique id of each communication
+	 * object.
+	 */
+	private ConcurrentHashMap<String, Integer> busyRetries = new ConcurrentHashMap<>();
+	private static final int maximumBusyRetries = 5;
+	private static final long busyBackoff = 100; // milliseconds, for the first retry
+	/**
+	 * A request without a response in time is sent again with the same unique id,
+	 * the server answers a request it already received with the same response,
+	 * without executing it twice
+	 */
+	private static final long requestTimeout = 10; // seconds
+	private static final int maximumResends = 3;
+	private ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "busy-retry");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	public GoNatureClient(String host, int port) { // Constructor
 		super(host, port);
+		setFramed(true); // the server reads the messages as frames
 	}
 
 	/**
@@ -41,87 +102,395 @@ public class GoNatureClient extends AbstractClient {
 		} catch (IOException e) { // if connection failed
 			return false;
 		}
+		negotiateCodec();
+		// renewing the subscriptions of a previous connection
+		for (String topic : subscriptions.keySet())
+			sendSubscription(topic, ClientMessageType.SUBSCRIBE);
 		return true; // if connection succeed
 	}
 
+	/**
+	 * Offers the server the Communication codec, instead of Java serialization,
+	 * and the compression of large messages. The codec is used only if the server
+	 * answered with the version it supports, and the compression only if the
+	 * server agreed on it. A server which does not answer in time keeps the
+	 * connection on uncompressed Java serialization.
+	 */
+	private void negotiateCodec() {
+		codecVersion = 0;
+		isCompressing = false;
+		Communication connect = new Communication(CommunicationType.CLIENT_SERVER_MESSAGE);
+		connect.setClientMessageType(ClientMessageType.CONNECT);
+		connect.setProtocolVersion(CommunicationCodec.version);
+		connect.setCompressionEnabled(true);
+		try {
+			sendRequest(connect).get(negotiationTimeout, TimeUnit.SECONDS);
+			codecVersion = Math.min(connect.getProtocolVersion(), CommunicationCodec.version);
+			isCompressing = connect.isCompressionEnabled();
+		} catch (TimeoutException e) {
+			awaitingRequests.remove(connect.getUniqueId());
+			awaitingResponses.remove(connect.getUniqueId());
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ (codecVersion > 0 ? ": Using Communication codec version " + codecVersion
+								: ": Using Java serialization")
+						+ (isCompressing ? ", compressing large messages" : ""));
+	}
+
+	/**
+	 * Encodes the Communication with the codec, and compresses it if it's large,
+	 * as agreed on with the server
+	 */
+	@Override
+	protected byte[] serializeMessage(Object message) throws IOException {
+		if (!(message instanceof Communication))
+			return super.serializeMessage(message);
+		byte[] frame = codecVersion > 0 ? CommunicationCodec.encode((Communication) message)
+				: super.serializeMessage(message);
+		return isCompressing ? compression.compress(frame) : frame;
+	}
+
+	/**
+	 * Decodes a message encoded by the codec, or deserializes it otherwise. A
+	 * compressed message is decompressed first
+	 */
+	@Override
+	protected Object deserializeMessage(byte[] frame) throws IOException, ClassNotFoundException {
+		if (WireCompression.isCompressed(frame))
+			frame = WireCompression.decompress(frame);
+		if (CommunicationCodec.isEncoded(frame))
+			return CommunicationCodec.decode(frame);
+		return super.deserializeMessage(frame);
+	}
+
 	/**
 	 * Gets a Communication response from the server and updates the Communication
-	 * request with the result, or conquers the focus using ScreenManager
+	 * request with the result, then completes the request's future
 	 * 
 	 * @param responseFromServer a Communication object from the server-side
 	 */
 	@Override
 	protected void handleMessageFromServer(Object responseFromServer) {
-		awaitResponse = false;
 		Communication serverMessage = (Communication) responseFromServer;
 
+		// a message pushed by the server is handed to the listeners of its topic
+		if (serverMessage.getServerMessageType() == ServerMessageType.PUSH) {
+			CopyOnWriteArrayList<Consumer<Communication>> listeners = subscriptions.get(serverMessage.getTopic());
+			if (listeners != null) {
+				for (Consumer<Communication> listener : listeners) {
+					try {
+						listener.accept(serverMessage);
+					} catch (RuntimeException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+			return;
+		}
+
+		// a request rejected by a busy server is sent again later
+		if (serverMessage.getServerMessageType() == ServerMessageType.BUSY) {
+			retryBusyRequest(serverMessage.getUniqueId());
+			return;
+		}
+
 		if (serverMessage.getServerMessageType() == ServerMessageType.RESPONSE) {
 
+			// a chunk of a streamed result is added to its stream, and the request is
+			// completed only by the last chunk. a server which does not stream the result
+			// answers with a single response, taken as the only chunk
+			ResultStream stream = awaitingStreams.get(serverMessage.getUniqueId());
+			if (stream != null) {
+				boolean isAdded = stream.addChunk(serverMessage.getChunkIndex(), serverMessage.getResultList());
+				if (isAdded && serverMessage.isStreamed() && !serverMessage.isLastChunk())
+					return;
+				awaitingStreams.remove(serverMessage.getUniqueId());
+				if (isAdded)
+					stream.end(serverMessage.getQueryResult());
+			}
+
 			// finding the original request
 			Communication originalRequest = awaitingRequests.remove(serverMessage.getUniqueId());
+			CompletableFuture<Communication> future = awaitingResponses.remove(serverMessage.getUniqueId());
+			busyRetries.remove(serverMessage.getUniqueId());
+			if (originalRequest == null) // the request is not awaiting anymore
+				return;
 
 			// if the original request was a single query request
 			if (originalRequest.getCommunicationType() == CommunicationType.QUERY_REQUEST) {
-				if (originalRequest.getQueryType() == QueryType.SELECT) {
+				if (originalRequest.getQueryType() == QueryType.SELECT && stream != null) {
+					originalRequest.setQueryResult(stream.isSucceed()); // the rows are in the stream
+				} else if (originalRequest.getQueryType() == QueryType.SELECT) {
 					originalRequest.setResultList(serverMessage.getResultList());
 					originalRequest.setQueryResult(serverMessage.getQueryResult());
+					// an authentication is answered with the table the user was found in
+					if (originalRequest.getSecondaryRequest() == SecondaryRequest.AUTHENTICATE)
+						originalRequest.setTables(serverMessage.getTables());
 				} else {
 					originalRequest.setQueryResult(serverMessage.getQueryResult());
 				}
 			}
 
+			// if the original request was a connection message, the server answers with
+			// the codec version and the compression it agreed on
+			if (originalRequest.getCommunicationType() == CommunicationType.CLIENT_SERVER_MESSAGE) {
+				originalRequest.setProtocolVersion(serverMessage.getProtocolVersion());
+				originalRequest.setCompressionEnabled(serverMessage.isCompressionEnabled());
+			}
+
 			// if the original request was a transaction request
 			if (originalRequest.getCommunicationType() == CommunicationType.TRANSACTION) {
 				originalRequest.setQueryResult(serverMessage.getQueryResult());
 			}
+
+			// if the original request was a batch request, each of the batch requests
+			// gets its own result list
+			if (originalRequest.getCommunicationType() == CommunicationType.BATCH) {
+				ArrayList<ArrayList<Object[]>> batchResults = serverMessage.getBatchResults();
+				ArrayList<Communication> requests = originalRequest.getRequestsList();
+				for (int i = 0; i < requests.size(); i++) {
+					ArrayList<Object[]> resultList = batchResults == null ? null : batchResults.get(i);
+					requests.get(i).setResultList(resultList);
+					requests.get(i).setQueryResult(resultList != null);
+				}
+				originalRequest.setQueryResult(serverMessage.getQueryResult());
+			}
+
+			if (future != null)
+				future.complete(originalRequest);
 			return;
 		}
 	}
 
 	/**
-	 * Analyses the message and sends it to the server
-	 * 
-	 * @param request a Communication object from the client-side GUI
+	 * If the connection to the server is lost, all the awaiting requests are
+	 * completed with the exception
 	 */
-	protected void handleMessageFromClientUI(Object requestFromClientSide) {
-		try {
-			awaitResponse = true;
-			Communication request = (Communication) requestFromClientSide;
+	@Override
+	protected void connectionException(Exception exception) {
+		failAwaitingRequests(exception);
+	}
 
-			// creating a unique id for the request and adding it to the requests map
-			awaitingRequests.put(request.getUniqueId(), request);
+	/**
+	 * If the connection to the server is closed, all the awaiting requests are
+	 * completed with an exception
+	 */
+	@Override
+	protected void connectionClosed() {
+		failAwaitingRequests(new IOException("Connection to server is closed"));
+	}
 
+	private void failAwaitingRequests(Exception exception) {
+		for (String uniqueId : awaitingResponses.keySet()) {
+			awaitingRequests.remove(uniqueId);
+			busyRetries.remove(uniqueId);
+			CompletableFuture<Communication> future = awaitingResponses.remove(uniqueId);
+			if (future != null)
+				future.completeExceptionally(exception);
+		}
+	}
+
+	/**
+	 * Sends a request rejected by a busy server again, after a random delay of up
+	 * to the backoff of its retry. A request rejected too many times is completed
+	 * as failed.
+	 * 
+	 * @param uniqueId the unique id of the rejected request
+	 */
+	private void retryBusyRequest(String uniqueId) {
+		Communication request = awaitingRequests.get(uniqueId);
+		if (request == null) // the request is not awaiting anymore
+			return;
+		int retry = busyRetries.merge(uniqueId, 1, Integer::sum);
+		if (retry > maximumBusyRetries) {
 			System.out.println(
 					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
-							+ ": Sending Communication Request no. " + request.getUniqueId());
+							+ ": Server is busy, giving up Communication Request no. " + uniqueId);
+			busyRetries.remove(uniqueId);
+			awaitingRequests.remove(uniqueId);
+			CompletableFuture<Communication> future = awaitingResponses.remove(uniqueId);
+			ResultStream stream = awaitingStreams.remove(uniqueId);
+			if (stream != null)
+				stream.end(false);
+			request.setQueryResult(false);
+			if (future != null)
+				future.complete(request);
+			return;
+		}
+
+		long delay = 1 + ThreadLocalRandom.current().nextLong(busyBackoff << (retry - 1));
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Server is busy, sending Communication Request no. " + uniqueId + " again in " + delay
+						+ " ms");
+		retryScheduler.schedule(() -> resend(request), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends an awaiting request again, with the same unique id. If the sending
+	 * fails, the request is completed with the exception
+	 * 
+	 * @param request the awaiting request
+	 */
+	private void resend(Communication request) {
+		String uniqueId = request.getUniqueId();
+		if (!awaitingRequests.containsKey(uniqueId)) // the response already arrived
+			return;
+		try {
+			send(request);
+		} catch (IOException e) {
+			awaitingRequests.remove(uniqueId);
+			busyRetries.remove(uniqueId);
+			CompletableFuture<Communication> future = awaitingResponses.remove(uniqueId);
+			if (future != null)
+				future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Sends the request to the server without waiting for the response. Several
+	 * requests can be awaiting at the same time, each response is matched to its
+	 * request by the unique id.
+	 * 
+	 * @param request a Communication object from the client-side
+	 * @return a future completed with the request, after it was updated with the
+	 *         server's response
+	 */
+	protected CompletableFuture<Communication> sendRequest(Communication request) {
+		CompletableFuture<Communication> future = new CompletableFuture<>();
 
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Sending Communication Request no. " + request.getUniqueId());
+
+		try {
 			// if this is a Disconnection request, just closing the connection
 			if (request.getCommunicationType() == CommunicationType.CLIENT_SERVER_MESSAGE) {
 				if (request.getClientMessageType() == ClientMessageType.DISCONNECT) {
-					sendToServer(request);
+					send(request);
 					try {
 						Thread.sleep(100);
 					} catch (InterruptedException e) {
 						e.printStackTrace();
 					}
 					closeConnection();
-					return;
+					future.complete(request);
+					return future;
 				}
 			}
 
+			// adding the request to the awaiting maps before sending it, so a fast
+			// response will find it
+			awaitingRequests.put(request.getUniqueId(), request);
+			awaitingResponses.put(request.getUniqueId(), future);
+
 			// any other communication request - sent to server side
-			sendToServer(request);
-			// waiting for response
-			while (awaitResponse) {
+			send(request);
+		} catch (IOException e) {
+			awaitingRequests.remove(request.getUniqueId());
+			awaitingResponses.remove(request.getUniqueId());
+			future.completeExceptionally(e);
+			System.out.println("Could not send message to server: Terminating client." + e);
+		}
+		return future;
+	}
+
+	/**
+	 * Sends a SELECT request to the server, asking for its result to be streamed
+	 * in chunks. The rows can be iterated as soon as their chunk arrives, instead
+	 * of waiting for the whole result set.
+	 * 
+	 * @param request a Communication object of a SELECT query
+	 * @return the stream of the result's rows
+	 */
+	protected ResultStream streamRequest(Communication request) {
+		request.setStreamed(true);
+		ResultStream stream = new ResultStream(request.getUniqueId());
+		awaitingStreams.put(request.getUniqueId(), stream);
+		sendRequest(request).whenComplete((response, exception) -> {
+			// the request failed before its last chunk arrived
+			if (exception != null && awaitingStreams.remove(request.getUniqueId()) != null)
+				stream.end(false);
+		});
+		return stream;
+	}
+
+	/**
+	 * Subscribes to a topic of the server's events. The listener is called with
+	 * every message the server pushes on the topic, by the thread reading from the
+	 * server, so it must not block, and must hand GUI updates to the JavaFX thread.
+	 * 
+	 * @param topic    the topic, such as "park:1:occupancy"
+	 * @param listener the listener of the topic's messages
+	 * @return a future completed after the server added the subscription
+	 */
+	protected CompletableFuture<Communication> subscribe(String topic, Consumer<Communication> listener) {
+		CopyOnWriteArrayList<Consumer<Communication>> listeners = subscriptions.computeIfAbsent(topic,
+				key -> new CopyOnWriteArrayList<>());
+		listeners.add(listener);
+		return sendSubscription(topic, ClientMessageType.SUBSCRIBE);
+	}
+
+	/**
+	 * Removes a listener of a topic. The server is asked to stop pushing the topic
+	 * after its last listener was removed.
+	 * 
+	 * @param topic    the topic
+	 * @param listener the listener to remove
+	 */
+	protected void unsubscribe(String topic, Consumer<Communication> listener) {
+		CopyOnWriteArrayList<Consumer<Communication>> listeners = subscriptions.get(topic);
+		if (listeners == null || !listeners.remove(listener))
+			return;
+		if (listeners.isEmpty() && subscriptions.remove(topic, listeners))
+			sendSubscription(topic, ClientMessageType.UNSUBSCRIBE);
+	}
+
+	private CompletableFuture<Communication> sendSubscription(String topic, ClientMessageType type) {
+		Communication subscription = new Communication(CommunicationType.CLIENT_SERVER_MESSAGE);
+		subscription.setClientMessageType(type);
+		subscription.setTopic(topic);
+		return sendRequest(subscription);
+	}
+
+	/**
+	 * Sends an object to the server. The sending is synchronized, since several
+	 * threads may send requests at the same time over the same stream.
+	 */
+	private synchronized void send(Object message) throws IOException {
+		sendToServer(message);
+	}
+
+	/**
+	 * Sends the message to the server and waits for the response. A request
+	 * without a response in time is sent again, up to the maximum number of
+	 * resends, and then waited for without sending it again
+	 * 
+	 * @param request a Communication object from the client-side GUI
+	 */
+	protected void handleMessageFromClientUI(Object requestFromClientSide) {
+		Communication request = (Communication) requestFromClientSide;
+		CompletableFuture<Communication> future = sendRequest(request);
+		try {
+			for (int resend = 1; resend <= maximumResends; resend++) {
 				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+					future.get(requestTimeout, TimeUnit.SECONDS);
+					return;
+				} catch (TimeoutException e) {
+					System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+							LocalTime.now().getSecond()) + ": No response in " + requestTimeout
+							+ " seconds, sending Communication Request no. " + request.getUniqueId() + " again");
+					resend(request);
 				}
 			}
-		} catch (IOException e) {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
 			e.printStackTrace();
-			System.out.println("Could not send message to server: Terminating client." + e);
 		}
 	}
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package clientSide.control;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 import common.communication.Communication;
 
 /**
@@ -33,4 +36,50 @@ public class GoNatureClientController {
 	public void accept(Communication request) {
 		client.handleMessageFromClientUI(request);
 	}
+
+	/**
+	 * Sends a request from the client side without waiting for its response, so
+	 * several requests can be sent at once.
+	 * 
+	 * @param request the Communication object from the client side
+	 * @return a future completed with the request, after it was updated with the
+	 *         server's response
+	 */
+	public CompletableFuture<Communication> submit(Communication request) {
+		return client.sendRequest(request);
+	}
+
+	/**
+	 * Sends a SELECT request from the client side, and returns its rows as they
+	 * arrive from the server, without waiting for the whole result set.
+	 * 
+	 * @param request the Communication object of a SELECT query
+	 * @return the stream of the result's rows
+	 */
+	public ResultStream stream(Communication request) {
+		return client.streamRequest(request);
+	}
+
+	/**
+	 * Subscribes to a topic of the server's events, instead of querying the server
+	 * again for learning about changes.
+	 * 
+	 * @param topic    the topic, as created by the Communication class
+	 * @param listener the listener of the messages pushed on the topic, called by
+	 *                 the thread reading from the server
+	 * @return a future completed after the server added the subscription
+	 */
+	public CompletableFuture<Communication> subscribe(String topic, Consumer<Communication> listener) {
+		return client.subscribe(topic, listener);
+	}
+
+	/**
+	 * Removes a listener of a topic of the server's events
+	 * 
+	 * @param topic    the topic
+	 * @param listener the listener to remove
+	 */
+	public void unsubscribe(String topic, Consumer<Communication> listener) {
+		client.unsubscribe(topic, listener);
+	}
 }
\ No newline at end of file
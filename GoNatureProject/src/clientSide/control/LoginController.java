@@ -14,8 +14,11 @@ import clientSide.gui.GoNatureClientUI;
 import common.communication.Communication;
 import common.communication.Communication.CommunicationType;
 import common.communication.Communication.QueryType;
+import common.communication.Communication.SecondaryRequest;
+import common.entities.Booking;
 import common.entities.Park;
 import common.communication.CommunicationException;
+import javafx.collections.ObservableList;
 
 public class LoginController {
 
@@ -25,277 +28,89 @@ public class LoginController {
 
 	/**
 	 * This method gets a username and a password and checks if they're exist in the
-	 * database. Returns a SystemUser instance if they do, null if not
+	 * database. Returns a SystemUser instance if they do, null if not. The server
+	 * side checks the credentials in the user's own table only, and sends back the
+	 * table's name, so a single request is sent for any type of user.
 	 * 
 	 * @param username
 	 * @param password
 	 * @return a SystemUser instance, and null if the credentials are not exist
 	 */
 	public SystemUser checkUserCredentials(String username, String password) {
-		// checking in the group guide table
-		ParkVisitor groupGuide = checkGroupGuideCredentials(username, password);
-		if (groupGuide != null)
-			return groupGuide;
-
-		// chcking in the park manager table
-		ParkManager parkManager = checkParkManagerCredentials(username, password);
-		if (parkManager != null)
-			return parkManager;
-
-		// checking in the department manager table
-		DepartmentManager deptManager = checkDepartmentManagerCredentials(username, password);
-		if (deptManager != null)
-			return deptManager;
-
-		// checking in the representative table
-		Representative representative = checkRepresentativeCredentials(username, password);
-		if (representative != null)
-			return representative;
-
-		// checking in the park employee of each park's table
-		ParkEmployee employee = checkParkEmployeeCredentials(username, password);
-		if (employee != null)
-			return employee;
-
-		// if these credentials do not exist in any table
-		return null;
-	}
-
-	/**
-	 * This method gets a username and a password and checks if these credentials
-	 * exist in the group guide table in the database
-	 * 
-	 * @param username
-	 * @param password
-	 * @return an instance of ParkVisitor if exist, null if not
-	 */
-	private ParkVisitor checkGroupGuideCredentials(String username, String password) {
-		// creating a select query to check if there's a group guide with these
-		// credentials
-		Communication requestForGroupGuide = new Communication(CommunicationType.QUERY_REQUEST);
+		// creating a select query to check if there's a user with these credentials
+		Communication requestForUser = new Communication(CommunicationType.QUERY_REQUEST);
 		try {
-			requestForGroupGuide.setQueryType(QueryType.SELECT);
+			requestForUser.setQueryType(QueryType.SELECT);
 		} catch (CommunicationException e) {
 			e.printStackTrace();
 		}
 
-		requestForGroupGuide.setTables(Arrays.asList(Communication.groupGuide));
-		requestForGroupGuide.setSelectColumns(Arrays.asList("*"));
-		requestForGroupGuide.setWhereConditions(Arrays.asList("userName", "password"), Arrays.asList("=", "AND", "="),
+		requestForUser.setSecondaryRequest(SecondaryRequest.AUTHENTICATE);
+		requestForUser.setSelectColumns(Arrays.asList("*"));
+		requestForUser.setWhereConditions(Arrays.asList("userName", "password"), Arrays.asList("=", "AND", "="),
 				Arrays.asList(username, password));
-		GoNatureClientUI.client.accept(requestForGroupGuide); // sending the query to the server side
+		GoNatureClientUI.client.accept(requestForUser); // sending the query to the server side
 
 		// getResultList will return list if there is user with this userName&password
-		if (!requestForGroupGuide.getResultList().isEmpty()) {
-			// insert the results to an ArrayList
-			ArrayList<Object[]> groupGuideResult = requestForGroupGuide.getResultList();
-
-			// insert relevant objects from the ArrayList to values
-			String idNumber = (String) groupGuideResult.get(0)[0];
-			String firstName = (String) groupGuideResult.get(0)[1];
-			String lastName = (String) groupGuideResult.get(0)[2];
-			String emailAddress = (String) groupGuideResult.get(0)[3];
-			String phoneNumber = (String) groupGuideResult.get(0)[4];
-			boolean isLoggedIn = ((Integer) groupGuideResult.get(0)[7]) == 0 ? false : true;
-
-			// creating an instance of the ParkVisitor and returning it
-			ParkVisitor groupGuideUser = new ParkVisitor(idNumber, firstName, lastName, emailAddress, phoneNumber,
-					username, password, isLoggedIn, ParkVisitor.VisitorType.GROUPGUIDE);
-			return groupGuideUser;
-		} else { // There is no group guide with these userName and password
+		ArrayList<Object[]> userResult = requestForUser.getResultList();
+		if (userResult == null || userResult.isEmpty() || requestForUser.getTables() == null
+				|| requestForUser.getTables().isEmpty()) {
+			// if these credentials do not exist in any table
 			return null;
 		}
-	}
-
-	/**
-	 * This method gets a username and a password and checks if these credentials
-	 * exist in the park manager table in the database
-	 * 
-	 * @param username
-	 * @param password
-	 * @return an instance of ParkManager if exist, null if not
-	 */
-	private ParkManager checkParkManagerCredentials(String username, String password) {
-		// creating a select query to check if there's a park manager with these
-		// credentials
-		Communication requestForParkManager = new Communication(CommunicationType.QUERY_REQUEST);
-		try {
-			requestForParkManager.setQueryType(QueryType.SELECT);
-		} catch (CommunicationException e) {
-			e.printStackTrace();
+		String table = requestForUser.getTables().get(0);
+		Object[] row = userResult.get(0);
+
+		// insert relevant objects from the row to values
+		String idNumber = (String) row[0];
+		String firstName = (String) row[1];
+		String lastName = (String) row[2];
+		String emailAddress = (String) row[3];
+		String phoneNumber = (String) row[4];
+
+		// creating an instance of the user by the table it was found in
+		if (table.equals(Communication.groupGuide)) {
+			boolean isLoggedIn = ((Integer) row[7]) == 0 ? false : true;
+			return new ParkVisitor(idNumber, firstName, lastName, emailAddress, phoneNumber, username, password,
+					isLoggedIn, ParkVisitor.VisitorType.GROUPGUIDE);
 		}
-
-		requestForParkManager.setTables(Arrays.asList(Communication.parkManager));
-		requestForParkManager.setSelectColumns(Arrays.asList("*"));
-		requestForParkManager.setWhereConditions(Arrays.asList("userName", "password"), Arrays.asList("=", "AND", "="),
-				Arrays.asList(username, password));
-		GoNatureClientUI.client.accept(requestForParkManager); // sending the query to the server side
-
-		// getResultList will return list if there is user with this userName&password
-		if (!requestForParkManager.getResultList().isEmpty()) {
-			// insert the results to an ArrayList
-			ArrayList<Object[]> parkManagerResult = requestForParkManager.getResultList();
-
-			// insert relevant objects from the ArrayList to values
-			String idNumber = (String) parkManagerResult.get(0)[0];
-			String firstName = (String) parkManagerResult.get(0)[1];
-			String lastName = (String) parkManagerResult.get(0)[2];
-			String emailAddress = (String) parkManagerResult.get(0)[3];
-			String phoneNumber = (String) parkManagerResult.get(0)[4];
-			String managesPark = (String) parkManagerResult.get(0)[5];
-			boolean isLoggedIn = ((Integer) parkManagerResult.get(0)[8]) == 0 ? false : true;
-
-			// creating an instance of the ParkManager and returning it
-			ParkManager parkManagerUser = new ParkManager(idNumber, firstName, lastName, emailAddress, phoneNumber,
-					managesPark, username, password, isLoggedIn);
-			return parkManagerUser;
-		} else { // There is no park manager with these userName and password
-			return null;
+		if (table.equals(Communication.parkManager)) {
+			String managesPark = (String) row[5];
+			boolean isLoggedIn = ((Integer) row[8]) == 0 ? false : true;
+			return new ParkManager(idNumber, firstName, lastName, emailAddress, phoneNumber, managesPark, username,
+					password, isLoggedIn);
 		}
-	}
-
-	/**
-	 * This method gets a username and a password and checks if these credentials
-	 * exist in the department manager table in the database
-	 * 
-	 * @param username
-	 * @param password
-	 * @return an instance of DepartmentManager if exist, null if not
-	 */
-	private DepartmentManager checkDepartmentManagerCredentials(String username, String password) {
-		// creating a select query to check if there's a department manager with these
-		// credentials
-		Communication requestForDeptManager = new Communication(CommunicationType.QUERY_REQUEST);
-		try {
-			requestForDeptManager.setQueryType(QueryType.SELECT);
-		} catch (CommunicationException e) {
-			e.printStackTrace();
-		}
-
-		requestForDeptManager.setTables(Arrays.asList(Communication.departmentManager));
-		requestForDeptManager.setSelectColumns(Arrays.asList("*"));
-		requestForDeptManager.setWhereConditions(Arrays.asList("userName", "password"), Arrays.asList("=", "AND", "="),
-				Arrays.asList(username, password));
-		GoNatureClientUI.client.accept(requestForDeptManager); // sending the query to the server side
-
-		// getResultList will return list if there is user with this userName&password
-		if (!requestForDeptManager.getResultList().isEmpty()) {
-			// insert the results to an ArrayList
-			ArrayList<Object[]> deptManagerResult = requestForDeptManager.getResultList();
-
-			// insert relevant objects from the ArrayList to values
-			String idNumber = (String) deptManagerResult.get(0)[0];
-			String firstName = (String) deptManagerResult.get(0)[1];
-			String lastName = (String) deptManagerResult.get(0)[2];
-			String emailAddress = (String) deptManagerResult.get(0)[3];
-			String phoneNumber = (String) deptManagerResult.get(0)[4];
-			String managesDept = (String) deptManagerResult.get(0)[5];
-			boolean isLoggedIn = ((Integer) deptManagerResult.get(0)[8]) == 0 ? false : true;
-
-			// creating an instance of the DepartmentManager and returning it
-			DepartmentManager deptManagerUser = new DepartmentManager(idNumber, firstName, lastName, emailAddress,
-					phoneNumber, managesDept, username, password, isLoggedIn);
-			return deptManagerUser;
-		} else { // There is no department manager with these userName and password
-			return null;
+		if (table.equals(Communication.departmentManager)) {
+			String managesDept = (String) row[5];
+			boolean isLoggedIn = ((Integer) row[8]) == 0 ? false : true;
+			return new DepartmentManager(idNumber, firstName, lastName, emailAddress, phoneNumber, managesDept,
+					username, password, isLoggedIn);
 		}
-	}
-
-	/**
-	 * This method gets a username and a password and checks if these credentials
-	 * exist in the representative table in the database
-	 * 
-	 * @param username
-	 * @param password
-	 * @return an instance of Representative if exist, null if not
-	 */
-	private Representative checkRepresentativeCredentials(String username, String password) {
-		// creating a select query to check if there's a representative with these
-		// credentials
-		Communication requestForRepresentative = new Communication(CommunicationType.QUERY_REQUEST);
-		try {
-			requestForRepresentative.setQueryType(QueryType.SELECT);
-		} catch (CommunicationException e) {
-			e.printStackTrace();
+		if (table.equals(Communication.representative)) {
+			boolean isLoggedIn = ((Integer) row[7]) == 0 ? false : true;
+			return new Representative(idNumber, firstName, lastName, emailAddress, phoneNumber, username, password,
+					isLoggedIn);
 		}
-
-		requestForRepresentative.setTables(Arrays.asList(Communication.representative));
-		requestForRepresentative.setSelectColumns(Arrays.asList("*"));
-		requestForRepresentative.setWhereConditions(Arrays.asList("userName", "password"),
-				Arrays.asList("=", "AND", "="), Arrays.asList(username, password));
-		GoNatureClientUI.client.accept(requestForRepresentative); // sending the query to the server side
-
-		// getResultList will return list if there is user with this userName&password
-		if (!requestForRepresentative.getResultList().isEmpty()) {
-			// insert the results to an ArrayList
-			ArrayList<Object[]> representativeResult = requestForRepresentative.getResultList();
-
-			// insert relevant objects from the ArrayList to values
-			String idNumber = (String) representativeResult.get(0)[0];
-			String firstName = (String) representativeResult.get(0)[1];
-			String lastName = (String) representativeResult.get(0)[2];
-			String emailAddress = (String) representativeResult.get(0)[3];
-			String phoneNumber = (String) representativeResult.get(0)[4];
-			boolean isLoggedIn = ((Integer) representativeResult.get(0)[7]) == 0 ? false : true;
-
-			// creating an instance of the Representative and returning it
-			Representative representative = new Representative(idNumber, firstName, lastName, emailAddress, phoneNumber,
+		if (table.endsWith(Communication.parkEmployees) && userResult.size() > 1) {
+			// a park employee is sent back with the park it is working in
+			boolean isLoggedIn = ((Integer) row[7]) == 0 ? false : true;
+			ParkEmployee parkEmployee = new ParkEmployee(idNumber, firstName, lastName, emailAddress, phoneNumber,
 					username, password, isLoggedIn);
-			return representative;
-		} else { // There is no representative with these userName and password
-			return null;
+			Object[] parkRow = userResult.get(1);
+			parkEmployee.setWorkingIn(new Park(Integer.parseInt(parkRow[0].toString()), // parkId
+					parkRow[1].toString(), // parkName
+					parkRow[2].toString(), // parkCity
+					parkRow[3].toString(), // parkState
+					parkRow[4].toString(), // parkDepartment
+					parkRow[5].toString(), // parkManagerId
+					parkRow[6].toString(), // departmentManagerId
+					Integer.parseInt(parkRow[7].toString()), // maximumVisitors
+					Integer.parseInt(parkRow[8].toString()), // maximumOrders
+					Integer.parseInt(parkRow[9].toString()), // timeLimit
+					Integer.parseInt(parkRow[10].toString()) // currentCapacity
+			));
+			return parkEmployee;
 		}
-	}
-
-	/**
-	 * This method gets a username and a password and checks if these credentials
-	 * exist in each park's employees table in the database
-	 * 
-	 * @param username
-	 * @param password
-	 * @return an instance of ParkEmployee if exist, null if not
-	 */
-	private ParkEmployee checkParkEmployeeCredentials(String username, String password) {
-		ArrayList<Park> parks = ParkController.getInstance().fetchParks();
-		for (Park park : parks) {
-			// creating a select query to check if there's a park employee with these
-			// credentials in this specific park
-			Communication requestForParkEmployee = new Communication(CommunicationType.QUERY_REQUEST);
-			try {
-				requestForParkEmployee.setQueryType(QueryType.SELECT);
-			} catch (CommunicationException e) {
-				e.printStackTrace();
-			}
-
-			String tableName = ParkController.getInstance().nameOfTable(park) + Communication.parkEmployees;
-			requestForParkEmployee.setTables(Arrays.asList(tableName));
-			requestForParkEmployee.setSelectColumns(Arrays.asList("*"));
-			requestForParkEmployee.setWhereConditions(Arrays.asList("userName", "password"),
-					Arrays.asList("=", "AND", "="), Arrays.asList(username, password));
-
-			GoNatureClientUI.client.accept(requestForParkEmployee); // sending the query to the server side
-
-			// getResultList will return list if there is user with this userName&password
-			if (!requestForParkEmployee.getResultList().isEmpty()) {
-				// insert the results to an ArrayList
-				ArrayList<Object[]> ParkEmployeeResult = requestForParkEmployee.getResultList();
-
-				// insert relevant objects from the ArrayList to values
-				String idNumber = (String) ParkEmployeeResult.get(0)[0];
-				String firstName = (String) ParkEmployeeResult.get(0)[1];
-				String lastName = (String) ParkEmployeeResult.get(0)[2];
-				String emailAddress = (String) ParkEmployeeResult.get(0)[3];
-				String phoneNumber = (String) ParkEmployeeResult.get(0)[4];
-				boolean isLoggedIn = ((Integer) ParkEmployeeResult.get(0)[7]) == 0 ? false : true;
-
-				// creating an instance of the ParkEmployee and returning it
-				ParkEmployee parkEmployee = new ParkEmployee(idNumber, firstName, lastName, emailAddress, phoneNumber,
-						username, password, isLoggedIn);
-				parkEmployee.setWorkingIn(park);
-				return parkEmployee;
-			}
-		}
-		// There is no park employee with these userName and password
 		return null;
 	}
 
@@ -402,14 +217,14 @@ public class LoginController {
 	 */
 	public boolean checkIfTravellerHasBookings(ParkVisitor traveller) {
 		BookingController bookingControl = BookingController.getInstance();
-		if (!(bookingControl.getVisitorBookings(traveller, Communication.activeBookings)).isEmpty())
-			return true;
-		if (!(bookingControl.getVisitorBookings(traveller, Communication.waitingList)).isEmpty())
-			return true;
-		if (!(bookingControl.getVisitorBookings(traveller, Communication.cancelledBookings)).isEmpty())
-			return true;
-		if (!(bookingControl.getVisitorBookings(traveller, Communication.doneBookings)).isEmpty())
-			return true;
+		// fetching all the tables at once
+		for (ObservableList<Booking> bookings : bookingControl
+				.getVisitorBookings(traveller, Arrays.asList(Communication.activeBookings, Communication.waitingList,
+						Communication.cancelledBookings, Communication.doneBookings))
+				.values()) {
+			if (!bookings.isEmpty())
+				return true;
+		}
 		return false;
 	}
 
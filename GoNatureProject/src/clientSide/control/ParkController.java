@@ -5,6 +5,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -14,6 +17,7 @@ import clientSide.entities.ParkVisitor.VisitorType;
 import clientSide.gui.GoNatureClientUI;
 import common.communication.Communication;
 import common.communication.CommunicationException;
+import common.communication.Communication.AggregateFunction;
 import common.communication.Communication.CommunicationType;
 import common.communication.Communication.NotificationType;
 import common.communication.Communication.QueryType;
@@ -40,6 +44,13 @@ public class ParkController {
 	
 
 	private Map<String, String> bookingDetails = new HashMap<>();
+	// the capacities of the parks kept up to date by the server's pushed messages,
+	// by the parks' names: maximum visitors, maximum orders, time limit and current
+	// capacity
+	private ConcurrentHashMap<String, AtomicIntegerArray> liveCapacities = new ConcurrentHashMap<>();
+	private static final String[] capacityColumns = { "maximumVisitorsCapacity", "maximumOrderAmount",
+			"maximumTimeLimit", "currentCapacity" };
+	private static final int unknownCapacity = Integer.MIN_VALUE; // not selected nor pushed yet
 
 	// emailTxt, phoneTxt, visitorsAmountTxt, visitorIDTxt, nameTxt, lastNameTxt;
 	/**
@@ -386,11 +397,13 @@ public class ParkController {
 			e.printStackTrace();
 		}
 		availabilityRequest.setTables(Arrays.asList(parkTableName));
-		availabilityRequest.setSelectColumns(Arrays.asList("numberOfVisitors"));
+		availabilityRequest.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
 		availabilityRequest.setWhereConditions(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"),
 				Arrays.asList("=", "AND", ">", "AND", "<"),
 				Arrays.asList(booking.getDayOfVisit(), booking.getTimeOfVisit().minusHours(parkTimeLimit),
 						booking.getTimeOfVisit().plusHours(parkTimeLimit)));
+		// letting the server answer from its occupancy timeline
+		availabilityRequest.setSecondaryRequest(SecondaryRequest.COUNT_VISITORS_IN_TIME_FRAME);
 
 		// sending the request to the server side
 		GoNatureClientUI.client.accept(availabilityRequest);
@@ -398,7 +411,7 @@ public class ParkController {
 		int countVisitors = 0;
 		// checking the orders amount for the specific time
 		for (Object[] row : availabilityRequest.getResultList()) {
-			countVisitors += (Integer) row[0];
+			countVisitors += ((Number) row[0]).intValue();
 		}
 		// checking park parameters
 		int result = parkOfBooking.getMaximumVisitors() - countVisitors - numberOfVisitors;
@@ -410,25 +423,28 @@ public class ParkController {
 	 * and change the 'currentCapacity' field for the relevant park. In case
 	 * visitors only arrive at the park, the currentCapacity will increase.
 	 * Otherwise, the opposite. This indicates to the managers the capacity of a
-	 * specific park.
+	 * specific park. The capacity is changed relative to its value in the database,
+	 * by a single query, so no lock of the park is needed. The capacity never
+	 * exceeds the park's maximum visitors capacity, and never goes below 0.
 	 * 
 	 * @param park
 	 * @param amount
-	 * @return It returns a String describing the capacity
+	 * @return true if the capacity was updated, false if it would exceed its
+	 *         limits or the update failed
 	 */
 	public boolean updateCurrentCapacity(String parkName, int amount, boolean add) {
 		Communication request = new Communication(CommunicationType.QUERY_REQUEST);
-		request.setCritical(true, park.getParkId() - 1);
 		try {
-			request.setQueryType(QueryType.SELECT);
+			request.setQueryType(QueryType.UPDATE);
 		} catch (CommunicationException e) {
 			e.printStackTrace();
 		}
 		request.setTables(Arrays.asList(Communication.park));
-		request.setSelectColumns(Arrays.asList("currentCapacity"));
+		request.setIncrement("currentCapacity", add ? amount : amount * -1, "maximumVisitorsCapacity");
 		request.setWhereConditions(Arrays.asList("parkName"), Arrays.asList("="), Arrays.asList(parkName));
 
-		// setting the secondary request
+		// setting the secondary request, for pushing the new capacity to the subscribed
+		// clients
 		request.setSecondaryRequest(SecondaryRequest.UPDATE_CAPACITY);
 		request.setNumberOfVisitors(add ? amount : amount * -1);
 
@@ -441,7 +457,9 @@ public class ParkController {
 	 * Retrieves current capacity and limits information for a specified park from
 	 * the database. This method executes a 'SELECT' SQL query to obtain details
 	 * such as the maximum visitors capacity, maximum order amount, maximum time
-	 * limit, and the current capacity of the park.
+	 * limit, and the current capacity of the park. After the first check of a
+	 * park, its capacities are pushed by the server whenever they change, so the
+	 * next checks are answered without querying the database again.
 	 * 
 	 * @return A String array containing four elements: 1. Maximum visitors capacity
 	 *         (retValue[0]) 2. Maximum order amount (retValue[1]) 3. Maximum time
@@ -450,41 +468,92 @@ public class ParkController {
 	 */
 	public String[] checkCurrentCapacity(String parkName) {
 		String[] retValue = new String[4];
+		AtomicIntegerArray live = liveCapacities.get(parkName);
+		if (live != null) {
+			for (int i = 0; i < retValue.length; i++)
+				retValue[i] = String.valueOf(live.get(i));
+			return retValue;
+		}
+
+		Object[] capacityDB = selectCapacities(parkName);
+		if (capacityDB == null)
+			return null;
+		for (int i = 0; i < retValue.length; i++)
+			retValue[i] = capacityDB[i].toString();
+		watchCapacities(parkName, (Integer) capacityDB[4]);
+		return retValue;
+	}
+
+	/**
+	 * @return the park's row of capacities, followed by its id. null if there are
+	 *         no results for the park
+	 */
+	private Object[] selectCapacities(String parkName) {
 		Communication request = new Communication(CommunicationType.QUERY_REQUEST);
 		try {
 			request.setQueryType(QueryType.SELECT);
 			request.setTables(Arrays.asList(Communication.park));
-			request.setSelectColumns(Arrays.asList("maximumVisitorsCapacity", "maximumOrderAmount", "maximumTimeLimit",
-					"currentCapacity"));
+			request.setSelectColumns(Arrays.asList(capacityColumns[0], capacityColumns[1], capacityColumns[2],
+					capacityColumns[3], "parkId"));
 			request.setWhereConditions(Arrays.asList("parkName"), Arrays.asList("="), Arrays.asList(parkName));
 		} catch (CommunicationException e) {
 			e.printStackTrace();
 		}
 		GoNatureClientUI.client.accept(request);
 		ArrayList<Object[]> result = request.getResultList();
-		// Saves the retrieved values from the database in order to return them to the
-		// requesting employee
-		try {
-			System.out.println(result.size());
-			if (!result.isEmpty()) {
-				Object[] capacityDB = result.get(0);
-				// Validate the result array to ensure it has the expected number of elements
-				// and none are null.
-				if (capacityDB.length == 4 && Arrays.stream(capacityDB).noneMatch(Objects::isNull)) {
-					retValue[0] = capacityDB[0].toString(); // maximumVisitorsCapacity
-					retValue[1] = capacityDB[1].toString(); // maximumOrderAmount
-					retValue[2] = capacityDB[2].toString(); // maximumTimeLimit
-					retValue[3] = capacityDB[3].toString(); // currentCapacity
-				} else {
-					System.out.println("Received incomplete or invalid data for park capacity.");
-					return null;
-				}
-			}
-		} catch (NullPointerException e) {
+		if (result == null || result.isEmpty()) {
 			System.out.println("No results found for park: " + parkName);
 			return null;
 		}
-		return retValue;
+		Object[] capacityDB = result.get(0);
+		// Validate the result array to ensure it has the expected number of elements
+		// and none are null.
+		if (capacityDB.length != 5 || !Arrays.stream(capacityDB).noneMatch(Objects::isNull)) {
+			System.out.println("Received incomplete or invalid data for park capacity.");
+			return null;
+		}
+		return capacityDB;
+	}
+
+	/**
+	 * This method subscribes to the pushed capacities and parameters of a park, and
+	 * keeps them up to date for the next capacity checks. The capacities are
+	 * selected again after the subscription was added, so no change is missed
+	 * between the first check and the subscription. A pushed value may be newer
+	 * than the selected one, so the selected capacities only fill the values no
+	 * push has set yet.
+	 * 
+	 * @param parkName the park's name
+	 * @param parkId   the park's id
+	 */
+	private void watchCapacities(String parkName, int parkId) {
+		AtomicIntegerArray live = new AtomicIntegerArray(capacityColumns.length);
+		for (int i = 0; i < capacityColumns.length; i++)
+			live.set(i, unknownCapacity);
+		try {
+			GoNatureClientUI.client.subscribe(Communication.parkOccupancyTopic(parkId), push -> {
+				live.set(3, Integer.parseInt(push.getResultList().get(0)[0].toString()));
+			}).get();
+			GoNatureClientUI.client.subscribe(Communication.parkParametersTopic(parkId), push -> {
+				for (Object[] parameter : push.getResultList())
+					for (int i = 0; i < capacityColumns.length; i++)
+						if (capacityColumns[i].equals(parameter[0]))
+							live.set(i, Integer.parseInt(parameter[1].toString()));
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) { // the capacities are checked by queries
+			e.printStackTrace();
+			return;
+		}
+
+		Object[] capacityDB = selectCapacities(parkName);
+		if (capacityDB == null)
+			return;
+		for (int i = 0; i < capacityColumns.length; i++)
+			live.compareAndSet(i, unknownCapacity, Integer.parseInt(capacityDB[i].toString()));
+		liveCapacities.put(parkName, live);
 	}
 
 	/**
@@ -613,7 +682,7 @@ public class ParkController {
 		try {
 			request.setQueryType(QueryType.UPDATE);
 			request.setTables(Arrays.asList(parkTable+Communication.activeBookings));
-			request.setColumnsAndValues(Arrays.asList("paid","entryParkTime"), Arrays.asList('0',"(NULL)"));
+			request.setColumnsAndValues(Arrays.asList("paid","entryParkTime"), Arrays.asList('0',null));
 			request.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("="), Arrays.asList(ID));
 		} catch (CommunicationException e) {
 			e.printStackTrace();
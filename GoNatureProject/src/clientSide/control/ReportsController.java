@@ -11,13 +11,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
 import clientSide.gui.GoNatureClientUI;
 import common.communication.Communication;
+import common.communication.Communication.AggregateFunction;
 import common.communication.Communication.CommunicationType;
 import common.entities.Park;
 import common.communication.CommunicationException;
@@ -169,7 +172,11 @@ public class ReportsController {
 			e.printStackTrace();
 		}
 		comm.setTables(Arrays.asList(parkTableName));
-		comm.setSelectColumns(Arrays.asList("dayOfVisit", "numberOfVisitors"));
+		comm.setSelectColumns(Arrays.asList("dayOfVisit"));
+		// the visitors of each day are summed and sorted by the database
+		comm.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
+		comm.setGroupByColumns(Arrays.asList("dayOfVisit"));
+		comm.setOrderByColumns(Arrays.asList("dayOfVisit"), false);
 		int month = Integer.parseInt(selectedMonth);
 		int year = Integer.parseInt(selectedYear);
 		LocalDate from = LocalDate.of(year, month, 1);
@@ -265,7 +272,7 @@ public class ReportsController {
 		Map<LocalDate, Integer> aggregatedData = new HashMap<>();
 		for (Object[] row : resultList) {
 			LocalDate date = ((java.sql.Date) row[0]).toLocalDate();
-			Integer visitors = (Integer) row[1];
+			Integer visitors = ((Number) row[1]).intValue();
 			aggregatedData.merge(date, visitors, Integer::sum);
 		}
 
@@ -410,7 +417,8 @@ public class ReportsController {
 	 * @param selectedPark  The park for which the report is being generated.
 	 * @return A map with visit types as keys (e.g., "Group", "Individual Visitor")
 	 *         and lists of XYChart.Data objects as values. Each XYChart.Data object
-	 *         represents a visit's entry time and duration.
+	 *         represents a visit's entry time and duration. Null if not all the
+	 *         visits were received from the server.
 	 */
 	public Map<String, List<XYChart.Data<Number, Number>>> generateVisitReport(String selectedMonth,
 			String selectedYear, Park selectedPark) {
@@ -441,22 +449,25 @@ public class ReportsController {
 		comm.setWhereConditions(Arrays.asList("dayOfVisit", "dayOfVisit"), Arrays.asList(">=", "AND", "<="),
 				Arrays.asList(from, to));
 
-		// Send the request to the server and return the processed data for charting.
-		GoNatureClientUI.client.accept(comm);
-		return processFetchedDataForChart(comm.getResultList());
+		// Send the request to the server and process the visits as they arrive, without
+		// holding the whole month in memory.
+		ResultStream visits = GoNatureClientUI.client.stream(comm);
+		Map<String, List<XYChart.Data<Number, Number>>> chartData = processFetchedDataForChart(visits);
+		// a stream which ended early holds only a part of the month
+		return visits.isSucceed() ? chartData : null;
 	}
 
 	/**
 	 * Processes fetched data for chart visualization. It calculates the duration of
 	 * each visit based on entry and exit times and categorizes them by visit type.
 	 * 
-	 * @param resultList The list of objects arrays fetched from the database, where
-	 *                   each array contains information about a single visit.
+	 * @param resultList The objects arrays fetched from the database, where each
+	 *                   array contains information about a single visit.
 	 * @return A map with keys as visit types and values as lists of XYChart.Data,
 	 *         each representing a point in the chart for a specific visit type and
 	 *         duration.
 	 */
-	private Map<String, List<XYChart.Data<Number, Number>>> processFetchedDataForChart(List<Object[]> resultList) {
+	private Map<String, List<XYChart.Data<Number, Number>>> processFetchedDataForChart(Iterable<Object[]> resultList) {
 		List<XYChart.Data<Number, Number>> groupVisits = new ArrayList<>();
 		List<XYChart.Data<Number, Number>> individualVisits = new ArrayList<>();
 
@@ -495,7 +506,8 @@ public class ReportsController {
 	 * @param selectedPark  The park for which the report is being generated.
 	 * @return A map with keys representing cancellation reasons and values as lists
 	 *         of XYChart.Data objects. Each XYChart.Data object pairs a day of the
-	 *         week with the average number of cancellations for that reason.
+	 *         week with the average number of cancellations for that reason. Null
+	 *         if not all the cancellations were received from the server.
 	 */
 	@SuppressWarnings("unchecked")
 	public Pair<Map<String, List<Data<String, Number>>>, Pair<Integer, Integer>> generateCancellationReport(
@@ -533,11 +545,14 @@ public class ReportsController {
 			} catch (CommunicationException e) {
 				e.printStackTrace();
 			}
-			GoNatureClientUI.client.accept(comm);
-			return processFetchedCancellationDataForChart(comm.getResultList());
+			ResultStream cancellations = GoNatureClientUI.client.stream(comm);
+			Pair<Map<String, List<Data<String, Number>>>, Pair<Integer, Integer>> chartData = processFetchedCancellationDataForChart(
+					cancellations);
+			// a stream which ended early holds only a part of the month
+			return cancellations.isSucceed() ? chartData : null;
 
 		} else {
-			ArrayList<Object[]> results = new ArrayList<>();
+			List<Communication> requests = new ArrayList<>();
 			for (Park park : (ArrayList<Park>) fetchFrom) {
 				// Prepare a database query to select cancellation data for the specified park
 				Communication comm = new Communication(Communication.CommunicationType.QUERY_REQUEST);
@@ -557,14 +572,55 @@ public class ReportsController {
 				LocalDate to = from.plusMonths(1).minusDays(1);
 				comm.setWhereConditions(Arrays.asList("dayOfVisit", "dayOfVisit"), Arrays.asList(">=", "AND", "<="),
 						Arrays.asList(from, to));
-				// Send the query request to the server and process the returned results for charting 
-				GoNatureClientUI.client.accept(comm);
-				results.addAll(comm.getResultList());
+				requests.add(comm);
 			}
-			return processFetchedCancellationDataForChart(results);
+			// Send the query requests to the server and process the returned results for charting
+			List<ResultStream> streams = new ArrayList<>();
+			Pair<Map<String, List<Data<String, Number>>>, Pair<Integer, Integer>> chartData = processFetchedCancellationDataForChart(
+					streamEach(requests, streams));
+			// a stream which ended early holds only a part of the month
+			boolean isSucceed = streams.size() == requests.size();
+			for (ResultStream stream : streams)
+				isSucceed &= stream.isSucceed();
+			return isSucceed ? chartData : null;
 		}
 	}
 
+	/**
+	 * Streams the results of several SELECT requests one after the other. Each
+	 * request is sent only after the rows of the previous one were processed, and
+	 * no request is sent after a stream which ended early.
+	 *
+	 * @param requests the SELECT requests
+	 * @param streams  the list filled with the streams of the sent requests, for
+	 *                 checking their success after the iteration
+	 * @return the rows of all the requests' results
+	 */
+	private Iterable<Object[]> streamEach(List<Communication> requests, List<ResultStream> streams) {
+		return () -> new Iterator<Object[]>() {
+			private int nextRequest = 0;
+			private ResultStream rows = null;
+
+			@Override
+			public boolean hasNext() {
+				while ((rows == null || !rows.hasNext()) && nextRequest < requests.size()) {
+					if (rows != null && !rows.isSucceed())
+						return false;
+					rows = GoNatureClientUI.client.stream(requests.get(nextRequest++));
+					streams.add(rows);
+				}
+				return rows != null && rows.hasNext();
+			}
+
+			@Override
+			public Object[] next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return rows.next();
+			}
+		};
+	}
+
 	/**
 	 * Processes fetched data to prepare it for visualization in a chart by
 	 * calculating the average number of visitors for each cancellation reason and
@@ -572,8 +628,8 @@ public class ReportsController {
 	 * the median number of cancelled orders and no-show visitors across all days,
 	 * which can provide insights into typical cancellation volumes.
 	 *
-	 * @param resultList A list of object arrays, each array representing a row from
-	 *                   the database query result. Each array is expected to
+	 * @param resultList The object arrays, each array representing a row from the
+	 *                   database query result. Each array is expected to
 	 *                   contain data for the day of visit , cancellation reason and
 	 *                   number of visitors.
 	 * 
@@ -584,7 +640,7 @@ public class ReportsController {
 	 *         cancelled orders and no-show visitors, respectively.
 	 */
 	private Pair<Map<String, List<XYChart.Data<String, Number>>>, Pair<Integer, Integer>> processFetchedCancellationDataForChart(
-			List<Object[]> resultList) {
+			Iterable<Object[]> resultList) {
 		Map<String, List<Integer>> cancelledOrdersStats = new HashMap<>();
 		Map<String, List<Integer>> noShowVisitorsStats = new HashMap<>();
 		ArrayList<Integer> cancelledOrdersList = new ArrayList<>();
@@ -0,0 +1,108 @@
+package clientSide.control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class holds the rows of a streamed SELECT query, received from the server
+ * in chunks. The rows can be iterated as soon as their chunk arrives, while the
+ * server is still sending the next ones, and every chunk can be released by the
+ * garbage collector once its rows were iterated. The iteration blocks until the
+ * next chunk arrives, and ends after the last chunk, or if the connection to the
+ * server was lost.
+ */
+public class ResultStream implements Iterable<Object[]>, Iterator<Object[]> {
+	private final String uniqueId;
+	private final BlockingQueue<ArrayList<Object[]>> chunks = new LinkedBlockingQueue<>();
+	// marks the end of the stream in the chunks queue
+	private static final ArrayList<Object[]> end = new ArrayList<>();
+	private Iterator<Object[]> current = Collections.emptyIterator();
+	private boolean isEnded = false; // accessed by the iterating thread only
+	private int nextChunk = 0; // accessed by the client's thread only
+	private volatile boolean succeed = false;
+
+	/**
+	 * Constructor
+	 *
+	 * @param uniqueId the unique id of the streamed request
+	 */
+	ResultStream(String uniqueId) {
+		this.uniqueId = uniqueId;
+	}
+
+	/**
+	 * This method adds a chunk received from the server. A chunk out of sequence
+	 * ends the stream as failed.
+	 *
+	 * @param chunkIndex the sequence number of the chunk
+	 * @param rows       the rows of the chunk
+	 * @return true if the chunk was added, false if it is out of sequence
+	 */
+	boolean addChunk(int chunkIndex, ArrayList<Object[]> rows) {
+		if (chunkIndex != nextChunk++) {
+			System.out.println("Chunk " + chunkIndex + " of Communication Request no. " + uniqueId
+					+ " is out of sequence, expected " + (nextChunk - 1));
+			end(false);
+			return false;
+		}
+		if (rows != null && !rows.isEmpty())
+			chunks.add(rows);
+		return true;
+	}
+
+	/**
+	 * This method ends the stream after its last chunk, or after a failure
+	 *
+	 * @param succeed true if all the rows were received
+	 */
+	void end(boolean succeed) {
+		this.succeed = succeed;
+		chunks.add(end);
+	}
+
+	/**
+	 * @return true if all the rows of the query were received. Valid only after
+	 *         the iteration has ended
+	 */
+	public boolean isSucceed() {
+		return succeed;
+	}
+
+	@Override
+	public Iterator<Object[]> iterator() {
+		return this;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (isEnded)
+				return false;
+			ArrayList<Object[]> chunk;
+			try {
+				chunk = chunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				isEnded = true;
+				return false;
+			}
+			if (chunk == end) {
+				isEnded = true;
+				return false;
+			}
+			current = chunk.iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public Object[] next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+}
@@ -4,8 +4,11 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import clientSide.control.BookingController;
 import clientSide.entities.ParkVisitor;
@@ -51,6 +54,9 @@ public class BookingViewScreenController extends AbstractScreen implements State
 	private ObservableList<Booking> pastBookings = null;
 	private ObservableList<Booking> futureBookings = null;
 	private ParkVisitor visitor;
+	// the topics of the waiting list bookings shown in the table, and their listener
+	private final ArrayList<String> watchedTopics = new ArrayList<>();
+	private final Consumer<Communication> statusListener = push -> Platform.runLater(() -> updateStatus(push));
 
 	/**
 	 * The constructor gets the instance of the booking controller
@@ -139,6 +145,7 @@ public class BookingViewScreenController extends AbstractScreen implements State
 	 * @param event
 	 */
 	void returnToPreviousScreen(ActionEvent event) {
+		unwatchWaitingList();
 		try {
 			// was not shown once, the previous screen is the account screen which needs to
 			// restore its state
@@ -279,6 +286,7 @@ public class BookingViewScreenController extends AbstractScreen implements State
 											+ " Park for " + chosenBooking.getDayOfVisit() + ", "
 											+ chosenBooking.getTimeOfVisit() + " was cancelled successfully");
 							futureTable.getItems().remove(chosenBooking);
+							unwatch(Communication.bookingStatusTopic(chosenBooking.getBookingId()));
 						}
 					});
 				}).start();
@@ -342,6 +350,68 @@ public class BookingViewScreenController extends AbstractScreen implements State
 
 		futureTable.setItems(futureBookings);
 		futureTable.getSortOrder().add(dateFutureColumn);
+		watchWaitingList();
+	}
+
+	/**
+	 * This method subscribes to the status of each waiting list booking in the
+	 * future bookings table, so a booking released from the waiting list is shown
+	 * as active without fetching the bookings again
+	 */
+	private void watchWaitingList() {
+		for (Booking futureBooking : futureBookings) {
+			String topic = Communication.bookingStatusTopic(futureBooking.getBookingId());
+			if (futureBooking.getStatus().equals("Waiting List") && !watchedTopics.contains(topic)) {
+				watchedTopics.add(topic);
+				GoNatureClientUI.client.subscribe(topic, statusListener);
+			}
+		}
+	}
+
+	/**
+	 * This method removes the subscription of a single waiting list booking
+	 * 
+	 * @param topic the topic of the booking's status
+	 */
+	private void unwatch(String topic) {
+		if (watchedTopics.remove(topic))
+			GoNatureClientUI.client.unsubscribe(topic, statusListener);
+	}
+
+	/**
+	 * This method removes the subscriptions of all the waiting list bookings, it is
+	 * called before the screen is left
+	 */
+	private void unwatchWaitingList() {
+		for (String topic : watchedTopics)
+			GoNatureClientUI.client.unsubscribe(topic, statusListener);
+		watchedTopics.clear();
+	}
+
+	/**
+	 * This method is called on the JavaFX thread with a pushed status of a waiting
+	 * list booking, as a row of [bookingId, status, waiting list priority]
+	 * 
+	 * @param push the pushed message
+	 */
+	private void updateStatus(Communication push) {
+		Object[] row = push.getResultList().get(0);
+		String bookingId = row[0].toString();
+		for (Booking futureBooking : futureBookings) {
+			if (!futureBooking.getBookingId().equals(bookingId) || !futureBooking.getStatus().equals("Waiting List"))
+				continue;
+			if (row[1].toString().equals(Communication.bookingReleased)) {
+				futureBooking.setStatus("Active");
+				unwatch(Communication.bookingStatusTopic(bookingId));
+				showInformationAlert("Your waiting list booking to " + futureBooking.getParkBooked().getParkName()
+						+ " Park for " + futureBooking.getDayOfVisit() + ", " + futureBooking.getTimeOfVisit()
+						+ " was released from the waiting list and is now active");
+			} else {
+				futureBooking.setWaitingListPriority(Integer.parseInt(row[2].toString()));
+			}
+			futureTable.refresh();
+			return;
+		}
 	}
 
 	/**
@@ -464,6 +534,7 @@ public class BookingViewScreenController extends AbstractScreen implements State
 	 * Saving relevant information from the screen for future restoring
 	 */
 	public void saveState() {
+		unwatchWaitingList();
 		Pair<ObservableList<Booking>, ObservableList<Booking>> pair = new Pair<>(pastBookings, futureBookings);
 		control.setPair(pair);
 		control.setBooking(booking);
@@ -494,11 +565,14 @@ public class BookingViewScreenController extends AbstractScreen implements State
 			visitor = (ParkVisitor) information;
 			if (pastBookings == null || futureBookings == null) {
 				new Thread(() -> {
-					// performing database operations
-					pastBookings = control.getVisitorBookings(visitor, Communication.doneBookings);
-					pastBookings.addAll(control.getVisitorBookings(visitor, Communication.cancelledBookings));
-					futureBookings = control.getVisitorBookings(visitor, Communication.activeBookings);
-					futureBookings.addAll(control.getVisitorBookings(visitor, Communication.waitingList));
+					// performing database operations, all the tables are fetched at once
+					HashMap<String, ObservableList<Booking>> bookings = control.getVisitorBookings(visitor,
+							Arrays.asList(Communication.doneBookings, Communication.cancelledBookings,
+									Communication.activeBookings, Communication.waitingList));
+					pastBookings = bookings.get(Communication.doneBookings);
+					pastBookings.addAll(bookings.get(Communication.cancelledBookings));
+					futureBookings = bookings.get(Communication.activeBookings);
+					futureBookings.addAll(bookings.get(Communication.waitingList));
 
 					Platform.runLater(() -> {
 						setTables(); // updating the table views with the fetched data
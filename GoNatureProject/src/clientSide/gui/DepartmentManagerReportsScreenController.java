@@ -301,6 +301,10 @@ public class DepartmentManagerReportsScreenController extends AbstractScreen {
 
 			Pair<Map<String, List<XYChart.Data<String, Number>>>, Pair<Integer, Integer>> pair = control
 					.generateCancellationReport(selectedMonth, selectedYear, parks);
+			if (pair == null) { // not all the data was received
+				showErrorAlert("Failed to fetch the report data, please try again.");
+				return;
+			}
 
 			// Show the aggregated report
 			try {
@@ -321,6 +325,10 @@ public class DepartmentManagerReportsScreenController extends AbstractScreen {
 			}
 			Pair<Map<String, List<Data<String, Number>>>, Pair<Integer, Integer>> pair = control
 					.generateCancellationReport(selectedMonth, selectedYear, selectedPark);
+			if (pair == null) { // not all the data was received
+				showErrorAlert("Failed to fetch the report data, please try again.");
+				return;
+			}
 			try {
 				ScreenManager.getInstance().showScreen("CancellationReportController",
 						"/clientSide/fxml/CancellationReport.fxml", true, false, pair);
@@ -353,6 +361,10 @@ public class DepartmentManagerReportsScreenController extends AbstractScreen {
 					if (control.isReportDataAvailable(selectedMonth, selectedYear, park, "done")) {
 						Map<String, List<XYChart.Data<Number, Number>>> parkVisitData = control
 								.generateVisitReport(selectedMonth, selectedYear, park);
+						if (parkVisitData == null) { // not all the data was received
+							showErrorAlert("Failed to fetch the report data, please try again.");
+							return;
+						}
 						parkVisitData.forEach((key, value) -> visitData.merge(key, value, (v1, v2) -> {
 							List<XYChart.Data<Number, Number>> mergedList = new ArrayList<>(v1);
 							mergedList.addAll(v2);
@@ -373,6 +385,10 @@ public class DepartmentManagerReportsScreenController extends AbstractScreen {
 				}
 				Map<String, List<XYChart.Data<Number, Number>>> visitData = control.generateVisitReport(selectedMonth,
 						selectedYear, selectedPark);
+				if (visitData == null) { // not all the data was received
+					showErrorAlert("Failed to fetch the report data, please try again.");
+					return;
+				}
 				ScreenManager.getInstance().showScreen("VisitReportController", "/clientSide/fxml/VisitReport.fxml",
 						true, false, visitData);
 			}
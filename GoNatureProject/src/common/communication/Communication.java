@@ -1,5 +1,8 @@
 package common.communication;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -48,6 +51,41 @@ public class Communication implements Serializable {
 	public static final String userDidNotArrive = "Did not arrive";
 	public static final String userDidNotConfirm = "Did not confirm";
 
+	///////////////////
+	/// PUSH TOPICS ///
+	///////////////////
+
+	/**
+	 * @param parkId the park's id
+	 * @return the topic of the park's current capacity, pushed as a single row of
+	 *         [currentCapacity]
+	 */
+	public static String parkOccupancyTopic(int parkId) {
+		return "park:" + parkId + ":occupancy";
+	}
+
+	/**
+	 * @param parkId the park's id
+	 * @return the topic of the park's approved parameters, pushed as rows of
+	 *         [parameter column, new value]
+	 */
+	public static String parkParametersTopic(int parkId) {
+		return "park:" + parkId + ":parameters";
+	}
+
+	/**
+	 * @param bookingId the booking's id
+	 * @return the topic of the booking's status, pushed as a single row of
+	 *         [bookingId, status, waiting list priority]
+	 */
+	public static String bookingStatusTopic(String bookingId) {
+		return "booking:" + bookingId + ":status";
+	}
+
+	// the statuses pushed on a booking's topic
+	public static final String bookingReleased = "released";
+	public static final String bookingWaiting = "waiting";
+
 	/**
 	 * The communication type of this communication instance
 	 * 
@@ -55,6 +93,9 @@ public class Communication implements Serializable {
 	 * 
 	 * TRANSACTION: a client-server message for multiple queries
 	 * 
+	 * BATCH: a client-server message for multiple independent SELECT queries,
+	 * answered together in a single response
+	 * 
 	 * NOTIFICATION: a client-server message request for sending a notification
 	 * 
 	 * CLIENT_SERVER_MESSAGE: a client-server message that is not a query
@@ -64,7 +105,7 @@ public class Communication implements Serializable {
 	 * SELF: an inner-server query request
 	 */
 	public enum CommunicationType {
-		QUERY_REQUEST, TRANSACTION, NOTIFICATION, CLIENT_SERVER_MESSAGE, SERVER_CLIENT_MESSAGE, SELF;
+		QUERY_REQUEST, TRANSACTION, BATCH, NOTIFICATION, CLIENT_SERVER_MESSAGE, SERVER_CLIENT_MESSAGE, SELF;
 	}
 
 	private CommunicationType communicationType; // the communication type
@@ -82,6 +123,7 @@ public class Communication implements Serializable {
 		switch (communicationType) {
 		case QUERY_REQUEST: // if this is a query request
 		case TRANSACTION: // or a transaction request
+		case BATCH: // or a batch request
 			clientMessageType = ClientMessageType.NONE;
 			serverMessageType = ServerMessageType.NONE;
 			notificationType = NotificationType.NONE;
@@ -111,6 +153,13 @@ public class Communication implements Serializable {
 		}
 	}
 
+	/**
+	 * Constructor of an empty Communication object, filled by the decoding of a
+	 * received Communication
+	 */
+	private Communication() {
+	}
+
 	/////////////////////////////////////////////////////////////////////
 	/// SQL QUERY AND TRANSACTION COMMUNICATION REQUESTS - PROPERTIES ///
 	/////////////////////////////////////////////////////////////////////
@@ -124,12 +173,26 @@ public class Communication implements Serializable {
 
 	private QueryType queryType;
 
+	/**
+	 * Determines the aggregate function of a SELECT query column
+	 */
+	public enum AggregateFunction {
+		SUM, COUNT, MIN, MAX;
+	}
+
 	// determines the table/s query is going to work on
 	private ArrayList<String> tables;
 
 	// for SELECT query, determines the selected columns (can also be '*')
 	private ArrayList<String> selectColumns;
 
+	// for SELECT query, determines the aggregated columns, the grouping and the order
+	private ArrayList<AggregateFunction> aggregateFunctions;
+	private ArrayList<String> aggregateColumns;
+	private ArrayList<String> groupByColumns;
+	private ArrayList<String> orderByColumns;
+	private boolean orderDescending;
+
 	// determines the "where" part conditions
 	private ArrayList<String> whereColumns;
 	private ArrayList<Object> whereValues;
@@ -139,6 +202,12 @@ public class Communication implements Serializable {
 	private ArrayList<String> columns;
 	private ArrayList<Object> values;
 
+	// determines a column of "set" increased by a delta, relative to its value in
+	// the database, and the column limiting it (optional)
+	private String incrementColumn;
+	private int incrementDelta;
+	private String incrementLimit;
+
 	// a list of communications to execute as a transaction
 	private ArrayList<Communication> requestsList = null;
 
@@ -146,6 +215,9 @@ public class Communication implements Serializable {
 	private boolean isCritical; // for critical sections park capacities updates
 	private int semaphoreIndex; // for telling which semaphore is relevant for this query
 
+	// set to true if the result of a SELECT query is sent back in chunks of rows
+	private boolean streamed;
+
 	///////////////////////////////////////////
 	/// NOTIFICATIONS REQUESTS - PROPERTIES ///
 	///////////////////////////////////////////
@@ -167,10 +239,13 @@ public class Communication implements Serializable {
 	 * Determines the client message's type
 	 */
 	public enum ClientMessageType {
-		CONNECT, DISCONNECT, NONE;
+		CONNECT, DISCONNECT, SUBSCRIBE, UNSUBSCRIBE, NONE;
 	}
 
 	private ClientMessageType clientMessageType;
+	private int protocolVersion; // the codec version offered or agreed on when connecting
+	private boolean compressionEnabled; // the wire compression offered or agreed on when connecting
+	private String topic; // the topic of a subscription, or of a pushed message
 
 	/////////////////////////////////////////////////////////
 	/// SERVER-CLIENT MESSAGES COMMUNICATION - PROPERTIES ///
@@ -178,15 +253,27 @@ public class Communication implements Serializable {
 
 	/**
 	 * Determines the server message's type
+	 * 
+	 * RESPONSE: the response to a request, with the request's unique id
+	 * 
+	 * PUSH: a message initiated by the server, to the clients subscribed to its
+	 * topic
+	 * 
+	 * BUSY: the request with the message's unique id was rejected, since the
+	 * server or the client's connection has too many requests waiting, and may be
+	 * sent again later
 	 */
 	public enum ServerMessageType {
-		RESPONSE, NONE;
+		RESPONSE, PUSH, BUSY, NONE;
 	}
 
 	private ServerMessageType serverMessageType;
 
 	private ArrayList<Object[]> resultList; // a container for the result set from the database, as ArrayList
 	private boolean queryResult; // holds the result of update/insert/delete queries
+	private ArrayList<ArrayList<Object[]>> batchResults; // the result lists of a batch, by the requests order
+	private int chunkIndex; // the sequence number of a chunk of a streamed result
+	private boolean lastChunk; // set to true on the last chunk of a streamed result
 
 	////////////////////////////////////////////////////
 	/// SECONDARY REQUEST COMMUNICATION - PROPERTIES ///
@@ -196,7 +283,8 @@ public class Communication implements Serializable {
 	 * Determines the secondary request's type
 	 */
 	public enum SecondaryRequest {
-		UPDATE_WAITING_LIST, UPDATE_CAPACITY, INSERT_BOOKING_AFTER_CHECKING_CAPACITIES, LOCK_BOOKING, CHECK_USER_LOCKED;
+		UPDATE_WAITING_LIST, UPDATE_CAPACITY, INSERT_BOOKING_AFTER_CHECKING_CAPACITIES, LOCK_BOOKING, CHECK_USER_LOCKED,
+		AVAILABLE_SLOTS, COUNT_VISITORS_IN_TIME_FRAME, AUTHENTICATE;
 	}
 
 	private SecondaryRequest secondaryRequest;
@@ -219,6 +307,10 @@ public class Communication implements Serializable {
 	private String parkName, parkLocation;
 	private int parkCapacities;
 
+	// properties for the availability slots scan in the server side
+	private LocalDate lastDayOfRange;
+	private int openHour, closeHour, minutesGap;
+
 	///////////////////////
 	/// GENERAL METHODS ///
 	///////////////////////
@@ -263,6 +355,76 @@ public class Communication implements Serializable {
 		return queryType;
 	}
 
+	/**
+	 * @return the tables the query is going to work on
+	 */
+	public ArrayList<String> getTables() {
+		return tables;
+	}
+
+	/**
+	 * @return the columns of the SELECT query
+	 */
+	public ArrayList<String> getSelectColumns() {
+		return selectColumns;
+	}
+
+	/**
+	 * @return the columns of the WHERE part
+	 */
+	public ArrayList<String> getWhereColumns() {
+		return whereColumns;
+	}
+
+	/**
+	 * @return the operators of the WHERE part
+	 */
+	public ArrayList<String> getWhereOperators() {
+		return whereOperators;
+	}
+
+	/**
+	 * @return the values of the WHERE part
+	 */
+	public ArrayList<Object> getWhereValues() {
+		return whereValues;
+	}
+
+	/**
+	 * @return the columns of the SET or INSERT parts
+	 */
+	public ArrayList<String> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return the values of the SET or INSERT parts
+	 */
+	public ArrayList<Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the column increased by the UPDATE query, null if there is none
+	 */
+	public String getIncrementColumn() {
+		return incrementColumn;
+	}
+
+	/**
+	 * @return the delta added to the increased column
+	 */
+	public int getIncrementDelta() {
+		return incrementDelta;
+	}
+
+	/**
+	 * @return the column limiting the increased column, null if it's not limited
+	 */
+	public String getIncrementLimit() {
+		return incrementLimit;
+	}
+
 	/**
 	 * This method returns the secondery request if exists
 	 * 
@@ -286,6 +448,13 @@ public class Communication implements Serializable {
 		}
 	}
 
+	/**
+	 * @return true if the result of the SELECT query is sent back in chunks of rows
+	 */
+	public boolean isStreamed() {
+		return streamed;
+	}
+
 	/**
 	 * Gets the unique ID of the park.
 	 *
@@ -439,6 +608,42 @@ public class Communication implements Serializable {
 		return parkCapacities;
 	}
 
+	/**
+	 * Gets the last date of the availability scan range.
+	 *
+	 * @return The last date of the range.
+	 */
+	public LocalDate getLastDayOfRange() {
+		return lastDayOfRange;
+	}
+
+	/**
+	 * Gets the first hour checked in the availability scan.
+	 *
+	 * @return The opening hour.
+	 */
+	public int getOpenHour() {
+		return openHour;
+	}
+
+	/**
+	 * Gets the last hour checked in the availability scan.
+	 *
+	 * @return The closing hour.
+	 */
+	public int getCloseHour() {
+		return closeHour;
+	}
+
+	/**
+	 * Gets the minutes gap between two checked slots of the same hour.
+	 *
+	 * @return The minutes gap, 0 if only full hours are checked.
+	 */
+	public int getMinutesGap() {
+		return minutesGap;
+	}
+
 	///////////////
 	/// SETTERS ///
 	///////////////
@@ -476,6 +681,40 @@ public class Communication implements Serializable {
 		this.selectColumns = new ArrayList<String>(selectColumns);
 	}
 
+	/**
+	 * If the query is SELECT, this method sets aggregated columns, computed by the
+	 * database and returned after the select columns (if there are any). A SUM of
+	 * no rows is returned as 0.
+	 * 
+	 * @param aggregateFunctions a List of the aggregate functions
+	 * @param aggregateColumns   a List of Strings denoting the aggregated columns
+	 *                           (or '*' for COUNT)
+	 */
+	public void setAggregates(List<AggregateFunction> aggregateFunctions, List<String> aggregateColumns) {
+		this.aggregateFunctions = new ArrayList<AggregateFunction>(aggregateFunctions);
+		this.aggregateColumns = new ArrayList<String>(aggregateColumns);
+	}
+
+	/**
+	 * If the query is SELECT, this method sets the GROUP BY part of the query
+	 * 
+	 * @param groupByColumns a List of Strings denoting the grouping columns
+	 */
+	public void setGroupByColumns(List<String> groupByColumns) {
+		this.groupByColumns = new ArrayList<String>(groupByColumns);
+	}
+
+	/**
+	 * If the query is SELECT, this method sets the ORDER BY part of the query
+	 * 
+	 * @param orderByColumns  a List of Strings denoting the ordering columns
+	 * @param orderDescending true for descending order, false for ascending
+	 */
+	public void setOrderByColumns(List<String> orderByColumns, boolean orderDescending) {
+		this.orderByColumns = new ArrayList<String>(orderByColumns);
+		this.orderDescending = orderDescending;
+	}
+
 	/**
 	 * This method sets the WHERE part of the query. Limitations:
 	 * whereColumns.size() must be equal to whereValues.size(), Moreover,
@@ -486,7 +725,8 @@ public class Communication implements Serializable {
 	 * @param whereOperators a List of Strings denoting the WHERE operators ("=",
 	 *                       ">", "<", ">=", "<=", "!=", "AND", "OR", etc.)
 	 * @param whereValues    a List of Objects denoting the values to check of each
-	 *                       columns
+	 *                       columns. The value of an "IN" operator is a List of
+	 *                       the values
 	 */
 	public void setWhereConditions(List<String> whereColumns, List<String> whereOperators, List<Object> whereValues) {
 		this.whereColumns = new ArrayList<String>(whereColumns);
@@ -505,6 +745,24 @@ public class Communication implements Serializable {
 		this.values = new ArrayList<Object>(values);
 	}
 
+	/**
+	 * This method sets a column of the SET part to be increased by a delta,
+	 * relative to its value in the database ("column = column + delta"), so the
+	 * column is updated by a single query without reading it first. If a limit
+	 * column is given, the row is updated only if the increased value does not
+	 * exceed the limit column, and a decreased value does not go below 0, so the
+	 * number of updated rows tells if the limit held.
+	 * 
+	 * @param column      the increased column
+	 * @param delta       the delta to add, negative for decreasing the column
+	 * @param limitColumn the column limiting the increased column, or null
+	 */
+	public void setIncrement(String column, int delta, String limitColumn) {
+		this.incrementColumn = column;
+		this.incrementDelta = delta;
+		this.incrementLimit = limitColumn;
+	}
+
 	/**
 	 * Thus method sets the secondary request, if relevant
 	 * 
@@ -527,6 +785,17 @@ public class Communication implements Serializable {
 		this.semaphoreIndex = semaphoreIndex;
 	}
 
+	/**
+	 * This method sets whether the result of the SELECT query is sent back in
+	 * chunks of rows, read by the client while the server is still reading the
+	 * next ones
+	 * 
+	 * @param streamed true for a chunked result, false for a single result list
+	 */
+	public void setStreamed(boolean streamed) {
+		this.streamed = streamed;
+	}
+
 	/**
 	 * Sets the unique ID of the park.
 	 *
@@ -680,6 +949,22 @@ public class Communication implements Serializable {
 		this.parkCapacities = parkCapacities;
 	}
 
+	/**
+	 * Sets the range and the hours of an availability scan. The first date of the
+	 * range is the day of visit property.
+	 *
+	 * @param lastDayOfRange The last date of the range.
+	 * @param openHour       The first hour to check.
+	 * @param closeHour      The last hour to check.
+	 * @param minutesGap     The minutes gap between slots, 0 for full hours only.
+	 */
+	public void setAvailabilityRange(LocalDate lastDayOfRange, int openHour, int closeHour, int minutesGap) {
+		this.lastDayOfRange = lastDayOfRange;
+		this.openHour = openHour;
+		this.closeHour = closeHour;
+		this.minutesGap = minutesGap;
+	}
+
 	/////////////////////////////////
 	/// QUERY COMBINATION METHODS ///
 	/////////////////////////////////
@@ -693,15 +978,40 @@ public class Communication implements Serializable {
 	 *                                Communication is not of QUERY_REQUEST type
 	 */
 	public String combineQuery() throws CommunicationException {
+		return combineQuery(null);
+	}
+
+	/**
+	 * This method creates the query in its parameterized form: every value is
+	 * replaced by a '?' and added to the parameters list, in order. The returned
+	 * String depends only on the tables, columns and operators of the query, so it
+	 * can be used as a key for caching the compiled statement.
+	 * 
+	 * @param parameters an empty list, filled with the values to bind
+	 * @return a String ready for compilation in the DatabaseController
+	 * @throws CommunicationException if trying to combine a query while the
+	 *                                Communication is not of QUERY_REQUEST type
+	 */
+	public String combinePreparedQuery(ArrayList<Object> parameters) throws CommunicationException {
+		if (parameters == null)
+			throw new CommunicationException("Parameters list is not included");
+		return combineQuery(parameters);
+	}
+
+	/**
+	 * @param parameters the list to add the values to, or null for adding them to
+	 *                   the query text
+	 */
+	private String combineQuery(ArrayList<Object> parameters) throws CommunicationException {
 		switch (queryType) {
 		case SELECT:
-			return combineSelectQuery();
+			return combineSelectQuery(parameters);
 		case UPDATE:
-			return combineUpdateQuery();
+			return combineUpdateQuery(parameters);
 		case INSERT:
-			return combineInsertQuery();
+			return combineInsertQuery(parameters);
 		case DELETE:
-			return combineDeleteQuery();
+			return combineDeleteQuery(parameters);
 		default: // NONE
 			throw new CommunicationException("No query type chosen");
 		}
@@ -714,43 +1024,44 @@ public class Communication implements Serializable {
 	 * @throws CommunicationException if the tables or selectColumns are not
 	 *                                included in the QUERY_REQUEST Communication
 	 */
-	private String combineSelectQuery() throws CommunicationException {
-		String query = "SELECT ";
+	private String combineSelectQuery(ArrayList<Object> parameters) throws CommunicationException {
+		StringBuilder query = new StringBuilder("SELECT ");
 		// adding the column/s to select from
-		if (selectColumns == null)
+		if (selectColumns == null && aggregateColumns == null)
 			throw new CommunicationException("Columns are not included");
-		if (selectColumns.size() == 1) { // only one column, or *
-			query += selectColumns.get(0) + " ";
-		} else { // several columns from the table/s
-			for (int i = 0; i < selectColumns.size(); i++) {
-				if (i + 1 == selectColumns.size()) { // if this is the last column, no ',' after it
-					query += selectColumns.get(i) + " ";
-				} else {
-					query += selectColumns.get(i) + ",";
-				}
+		if (selectColumns != null)
+			query.append(String.join(",", selectColumns));
+
+		// adding the aggregated column/s
+		if (aggregateColumns != null) {
+			if (aggregateFunctions.size() != aggregateColumns.size())
+				throw new CommunicationException("Aggregate functions and columns are not matching");
+			for (int i = 0; i < aggregateColumns.size(); i++) {
+				if (i > 0 || selectColumns != null)
+					query.append(',');
+				String aggregate = aggregateFunctions.get(i) + "(" + aggregateColumns.get(i) + ")";
+				query.append(aggregateFunctions.get(i) == AggregateFunction.SUM ? "COALESCE(" + aggregate + ",0)"
+						: aggregate);
 			}
 		}
+		query.append(' ');
 
 		// adding the tables to select from
-		query += "FROM ";
+		query.append("FROM ");
 		if (tables == null)
 			throw new CommunicationException("Tables are not included");
-		if (tables.size() == 1) { // only one column, or *
-			query += tables.get(0) + " ";
-		} else { // several columns from the table/s
-			for (int i = 0; i < tables.size(); i++) {
-				if (i + 1 == tables.size()) { // if this is the last column, no ',' after it
-					query += tables.get(i) + "";
-				} else {
-					query += tables.get(i) + ",";
-				}
-			}
-		}
+		query.append(String.join(",", tables)).append(' ');
 
 		// adding the where part
-		query += createWherePart() + ";";
+		appendWherePart(query, parameters);
 
-		return query;
+		// adding the group by and order by parts
+		if (groupByColumns != null)
+			query.append(" GROUP BY ").append(String.join(",", groupByColumns));
+		if (orderByColumns != null)
+			query.append(" ORDER BY ").append(String.join(",", orderByColumns))
+					.append(orderDescending ? " DESC" : " ASC");
+		return query.append(';').toString();
 	}
 
 	/**
@@ -760,33 +1071,50 @@ public class Communication implements Serializable {
 	 * @throws CommunicationException if the tables or columns or values are not
 	 *                                included in the QUERY_REQUEST Communication
 	 */
-	private String combineUpdateQuery() throws CommunicationException {
-		String query = "UPDATE ";
+	private String combineUpdateQuery(ArrayList<Object> parameters) throws CommunicationException {
+		StringBuilder query = new StringBuilder("UPDATE ");
 		// adding the table name
 		if (tables == null)
 			throw new CommunicationException("Tables are not included");
-		query += tables.get(0) + " ";
+		query.append(tables.get(0)).append(' ');
 
 		// adding the column/s to set values to
-		query += "SET ";
-		if (columns == null) {
+		query.append("SET ");
+		if (columns == null && incrementColumn == null) {
 			throw new CommunicationException("Columns are not included");
 		}
-		if (values == null) {
-			throw new CommunicationException("Values are not included");
-		}
-		if (values.size() != columns.size()) {
-			throw new CommunicationException("Columns or values are missing");
+		if (columns != null) {
+			if (values == null) {
+				throw new CommunicationException("Values are not included");
+			}
+			if (values.size() != columns.size()) {
+				throw new CommunicationException("Columns or values are missing");
+			}
+
+			for (int i = 0; i < columns.size(); i++) {
+				query.append(columns.get(i)).append(" = ");
+				appendValue(query, values.get(i), parameters);
+				query.append(i + 1 == columns.size() ? "" : ", ");
+			}
 		}
 
-		for (int i = 0; i < columns.size(); i++) {
-			query += columns.get(i) + " = ";
-			query += prepareValue(values.get(i)) + (i + 1 == columns.size() ? "" : ", ");
+		// adding the increased column, relative to its current value
+		if (incrementColumn != null) {
+			query.append(columns == null ? "" : ", ").append(incrementColumn).append(" = ").append(incrementColumn)
+					.append(" + ");
+			appendValue(query, incrementDelta, parameters);
 		}
 
 		// adding the where part
-		query += createWherePart() + ";";
-		return query;
+		appendWherePart(query, parameters);
+
+		// adding the limit of the increased column
+		if (incrementColumn != null && incrementLimit != null) {
+			query.append(whereColumns == null ? " WHERE " : " AND ").append(incrementColumn).append(" + ");
+			appendValue(query, incrementDelta, parameters);
+			query.append(incrementDelta >= 0 ? " <= " + incrementLimit : " >= 0");
+		}
+		return query.append(';').toString();
 	}
 
 	/**
@@ -796,21 +1124,18 @@ public class Communication implements Serializable {
 	 * @throws CommunicationException if the tables or columns or values are not
 	 *                                included in the QUERY_REQUEST Communication
 	 */
-	private String combineInsertQuery() throws CommunicationException {
-		int i;
-		String query = "INSERT INTO ";
+	private String combineInsertQuery(ArrayList<Object> parameters) throws CommunicationException {
+		StringBuilder query = new StringBuilder("INSERT INTO ");
 		// adding the table name
 		if (tables == null)
 			throw new CommunicationException("Table is not included");
-		query += tables.get(0) + " (";
+		query.append(tables.get(0)).append(" (");
 
 		// adding the columns
 		if (columns == null) {
 			throw new CommunicationException("Columns are not included");
 		}
-		for (i = 0; i < columns.size(); i++) {
-			query += columns.get(i) + ((i + 1 == columns.size()) ? ") " : ",");
-		}
+		query.append(String.join(",", columns)).append(") ");
 
 		// adding the values
 		if (values == null) {
@@ -819,13 +1144,13 @@ public class Communication implements Serializable {
 		if (values.size() != columns.size()) {
 			throw new CommunicationException("Columns and values are not matching");
 		}
-		query += "VALUES (";
-		for (i = 0; i < values.size(); i++) {
-			query += prepareValue(values.get(i)) + ((i + 1 == values.size()) ? ")" : ",");
+		query.append("VALUES (");
+		for (int i = 0; i < values.size(); i++) {
+			appendValue(query, values.get(i), parameters);
+			query.append((i + 1 == values.size()) ? ")" : ",");
 		}
 
-		query += ";";
-		return query;
+		return query.append(';').toString();
 	}
 
 	/**
@@ -835,16 +1160,45 @@ public class Communication implements Serializable {
 	 * @throws CommunicationException if the tables are not included in the
 	 *                                QUERY_REQUEST Communication
 	 */
-	private String combineDeleteQuery() throws CommunicationException {
-		String query = "DELETE FROM ";
+	private String combineDeleteQuery(ArrayList<Object> parameters) throws CommunicationException {
+		StringBuilder query = new StringBuilder("DELETE FROM ");
 		// adding the table name
 		if (tables == null)
 			throw new CommunicationException("Table is not included");
-		query += tables.get(0) + "";
+		query.append(tables.get(0));
 
 		// adding the where part
-		query += createWherePart() + ";";
-		return query;
+		appendWherePart(query, parameters);
+		return query.append(';').toString();
+	}
+
+	/**
+	 * This method adds a value to the query, as a '?' to the query and to the
+	 * parameters list, or to the query text if the list is null. A List value (of
+	 * an "IN" operator) is added as "(...)" of its values.
+	 * 
+	 * @param query      the query being created
+	 * @param value      the value to add
+	 * @param parameters the parameters list, or null
+	 */
+	private void appendValue(StringBuilder query, Object value, ArrayList<Object> parameters) {
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			if (list.isEmpty()) { // nothing is IN an empty list
+				query.append("(NULL)");
+				return;
+			}
+			query.append('(');
+			for (int i = 0; i < list.size(); i++) {
+				appendValue(query, list.get(i), parameters);
+				query.append(i + 1 == list.size() ? ")" : ",");
+			}
+		} else if (parameters != null) {
+			query.append('?');
+			parameters.add(value);
+		} else {
+			query.append(prepareValue(value));
+		}
 	}
 
 	/**
@@ -873,9 +1227,6 @@ public class Communication implements Serializable {
 				return ret;
 			} else if (value instanceof Number) {
 				return ((Number) value).toString();
-			} else if (value instanceof String
-					&& (((String) value).matches("[a-zA-Z]+\\s[-+]\\s\\d+") || ((String) value).charAt(0) == '(')) {
-				return (String) value;
 			} else {
 				return "'" + value.toString() + "'";
 			}
@@ -883,30 +1234,30 @@ public class Communication implements Serializable {
 	}
 
 	/**
-	 * This method creates, if relevant, the WHERE part of the query, as string
+	 * This method adds, if relevant, the WHERE part of the query
 	 * 
-	 * @return a String of the WHERE part of the query
+	 * @param query      the query being created
+	 * @param parameters the parameters list, or null
 	 * @throws CommunicationException if the amount of values is not equal to the
 	 *                                amount of columns, or if the amount of
 	 *                                operators does not fit the amount of columns
 	 *                                and values
 	 */
-	private String createWherePart() throws CommunicationException {
-		String where = "";
+	private void appendWherePart(StringBuilder query, ArrayList<Object> parameters) throws CommunicationException {
 		if (whereColumns != null && whereOperators != null && whereValues != null) {
 			if (whereValues.size() != whereColumns.size()
 					|| whereOperators.size() != whereValues.size() + whereColumns.size() - 1) {
 				throw new CommunicationException("Columns and values are not matching");
 			}
-			where += " WHERE ";
+			query.append(" WHERE ");
 			int j = 0;
 			for (int i = 0; i < whereColumns.size(); i++) {
-				where += whereColumns.get(i) + " " + whereOperators.get(j++) + " ";
-				where += prepareValue(whereValues.get(i)) + (j < whereOperators.size() ? " " : "");
-				where += j < whereOperators.size() ? whereOperators.get(j++) + " " : "";
+				query.append(whereColumns.get(i)).append(' ').append(whereOperators.get(j++)).append(' ');
+				appendValue(query, whereValues.get(i), parameters);
+				if (j < whereOperators.size())
+					query.append(' ').append(whereOperators.get(j++)).append(' ');
 			}
 		}
-		return where;
 	}
 
 	/**
@@ -928,7 +1279,8 @@ public class Communication implements Serializable {
 	 * @return the requests list
 	 */
 	public ArrayList<Communication> getRequestsList() {
-		if (getCommunicationType() == CommunicationType.TRANSACTION) {
+		if (getCommunicationType() == CommunicationType.TRANSACTION
+				|| getCommunicationType() == CommunicationType.BATCH) {
 			return requestsList;
 		}
 		return null;
@@ -970,6 +1322,27 @@ public class Communication implements Serializable {
 		return clientMessageType;
 	}
 
+	/**
+	 * @return the version of the Communication codec, 0 for Java serialization
+	 */
+	public int getProtocolVersion() {
+		return protocolVersion;
+	}
+
+	/**
+	 * @return true if the wire compression is offered or agreed on
+	 */
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+
+	/**
+	 * @return the topic of a subscription, or of a pushed message
+	 */
+	public String getTopic() {
+		return topic;
+	}
+
 	///////////////
 	/// SETTERS ///
 	///////////////
@@ -983,6 +1356,37 @@ public class Communication implements Serializable {
 		this.clientMessageType = clientMessageType;
 	}
 
+	/**
+	 * This method sets the version of the Communication codec, offered by the
+	 * client on CONNECT and agreed on by the server in its response
+	 * 
+	 * @param protocolVersion the codec version, 0 for Java serialization
+	 */
+	public void setProtocolVersion(int protocolVersion) {
+		this.protocolVersion = protocolVersion;
+	}
+
+	/**
+	 * This method sets whether the large messages of the connection are
+	 * compressed, offered by the client on CONNECT and agreed on by the server in
+	 * its response
+	 * 
+	 * @param compressionEnabled true for compressing the large messages
+	 */
+	public void setCompressionEnabled(boolean compressionEnabled) {
+		this.compressionEnabled = compressionEnabled;
+	}
+
+	/**
+	 * This method sets the topic the client subscribes to or unsubscribes from, or
+	 * the topic of a message pushed by the server
+	 * 
+	 * @param topic the topic, such as "park:1:occupancy"
+	 */
+	public void setTopic(String topic) {
+		this.topic = topic;
+	}
+
 	////////////////////////////////////////////////////////////
 	/// METHODS FOR HANDLING SERVER TO CLIENT COMMUNICATIONS ///
 	////////////////////////////////////////////////////////////
@@ -1013,6 +1417,31 @@ public class Communication implements Serializable {
 		return queryResult;
 	}
 
+	/**
+	 * This method returns the result lists of a batch response, in the order of
+	 * the batch requests. A failed request has a null result list.
+	 * 
+	 * @return the batch result lists
+	 */
+	public ArrayList<ArrayList<Object[]>> getBatchResults() {
+		return batchResults;
+	}
+
+	/**
+	 * @return the sequence number of the chunk, if this is a chunk of a streamed
+	 *         result
+	 */
+	public int getChunkIndex() {
+		return chunkIndex;
+	}
+
+	/**
+	 * @return true if this is the last chunk of a streamed result
+	 */
+	public boolean isLastChunk() {
+		return lastChunk;
+	}
+
 	/**
 	 * @return the server-client type of message
 	 */
@@ -1057,6 +1486,28 @@ public class Communication implements Serializable {
 		this.queryResult = queryResult;
 	}
 
+	/**
+	 * This method sets the result lists to a Communication of RESPONSE type of a
+	 * batch request, by the server-side to the later use of the client-side.
+	 * 
+	 * @param batchResults the result lists, in the order of the batch requests
+	 */
+	public void setBatchResults(ArrayList<ArrayList<Object[]>> batchResults) {
+		this.batchResults = batchResults;
+	}
+
+	/**
+	 * This method sets the sequence of a chunk of a streamed result, sent by the
+	 * server-side under the unique id of the request
+	 * 
+	 * @param chunkIndex the sequence number of the chunk, starting from 0
+	 * @param lastChunk  true if no more chunks are sent for this request
+	 */
+	public void setChunk(int chunkIndex, boolean lastChunk) {
+		this.chunkIndex = chunkIndex;
+		this.lastChunk = lastChunk;
+	}
+
 	/**
 	 * Sets the server-client type of message
 	 * 
@@ -1065,4 +1516,276 @@ public class Communication implements Serializable {
 	public void setServerMessageType(ServerMessageType serverMessageType) {
 		this.serverMessageType = serverMessageType;
 	}
+
+	/////////////////////
+	/// CODEC METHODS ///
+	/////////////////////
+
+	// the order of the fields in the presence mask of an encoded Communication
+	private static final int UNIQUE_ID = 0, COMMUNICATION_TYPE = 1, QUERY_TYPE = 2, TABLES = 3, SELECT_COLUMNS = 4,
+			AGGREGATE_FUNCTIONS = 5, AGGREGATE_COLUMNS = 6, GROUP_BY_COLUMNS = 7, ORDER_BY_COLUMNS = 8,
+			ORDER_DESCENDING = 9, WHERE_COLUMNS = 10, WHERE_VALUES = 11, WHERE_OPERATORS = 12, COLUMNS = 13,
+			VALUES = 14, REQUESTS_LIST = 15, IS_CRITICAL = 16, SEMAPHORE_INDEX = 17, NOTIFICATION_TYPE = 18,
+			CLIENT_MESSAGE_TYPE = 19, SERVER_MESSAGE_TYPE = 20, RESULT_LIST = 21, QUERY_RESULT = 22,
+			BATCH_RESULTS = 23, SECONDARY_REQUEST = 24, PARK_ID = 25, BOOKING_ID = 26, DAY_OF_VISIT = 27,
+			TIME_OF_VISIT = 28, DAY_OF_BOOKING = 29, VISIT_TYPE = 30, NUMBER_OF_VISITORS = 31, ID_NUMBER = 32,
+			FIRST_NAME = 33, LAST_NAME = 34, EMAIL_ADDRESS = 35, PHONE_NUMBER = 36, FINAL_PRICE = 37, PAID = 38,
+			PARK_NAME = 39, PARK_LOCATION = 40, PARK_CAPACITIES = 41, LAST_DAY_OF_RANGE = 42, OPEN_HOUR = 43,
+			CLOSE_HOUR = 44, MINUTES_GAP = 45, PROTOCOL_VERSION = 46, STREAMED = 47, CHUNK_INDEX = 48,
+			LAST_CHUNK = 49, COMPRESSION_ENABLED = 50, TOPIC = 51, INCREMENT_COLUMN = 52, INCREMENT_DELTA = 53,
+			INCREMENT_LIMIT = 54;
+
+	/**
+	 * This method writes the populated fields of the Communication, used by
+	 * {@link CommunicationCodec#encode(Communication)}. The fields are preceded by
+	 * a mask of the populated fields, and boolean fields are written in the mask
+	 * only.
+	 * 
+	 * @param out the stream to write to
+	 * @throws IOException if one of the values can't be encoded
+	 */
+	void encode(DataOutputStream out) throws IOException {
+		long mask = 0;
+		Object[] fields = { uniqueId, communicationType, queryType, tables, selectColumns, aggregateFunctions,
+				aggregateColumns, groupByColumns, orderByColumns, null, whereColumns, whereValues, whereOperators,
+				columns, values, requestsList, null, semaphoreIndex, notificationType, clientMessageType,
+				serverMessageType, resultList, null, batchResults, secondaryRequest, parkId, bookingId, dayOfVisit,
+				timeOfVisit, dayOfBooking, visitType, numberOfVisitors, idNumber, firstName, lastName, emailAddress,
+				phoneNumber, finalPrice, null, parkName, parkLocation, parkCapacities, lastDayOfRange, openHour,
+				closeHour, minutesGap, protocolVersion, null, chunkIndex, null, null, topic, incrementColumn,
+				incrementDelta, incrementLimit };
+		for (int i = 0; i < fields.length; i++)
+			if (fields[i] != null && !Integer.valueOf(0).equals(fields[i]))
+				mask |= 1L << i;
+		if (orderDescending)
+			mask |= 1L << ORDER_DESCENDING;
+		if (isCritical)
+			mask |= 1L << IS_CRITICAL;
+		if (queryResult)
+			mask |= 1L << QUERY_RESULT;
+		if (paid)
+			mask |= 1L << PAID;
+		if (streamed)
+			mask |= 1L << STREAMED;
+		if (lastChunk)
+			mask |= 1L << LAST_CHUNK;
+		if (compressionEnabled)
+			mask |= 1L << COMPRESSION_ENABLED;
+		CommunicationCodec.writeVarLong(out, mask);
+
+		if ((mask & 1L << UNIQUE_ID) != 0) {
+			// a random UUID is written as two numbers, any other id as a string
+			UUID uuid = null;
+			try {
+				if (uniqueId.length() == 36)
+					uuid = UUID.fromString(uniqueId);
+			} catch (IllegalArgumentException e) {
+			}
+			out.writeBoolean(uuid != null);
+			if (uuid != null) {
+				out.writeLong(uuid.getMostSignificantBits());
+				out.writeLong(uuid.getLeastSignificantBits());
+			} else
+				CommunicationCodec.writeString(out, uniqueId);
+		}
+		for (int i = COMMUNICATION_TYPE; i < fields.length; i++) {
+			if ((mask & 1L << i) == 0 || fields[i] == null)
+				continue;
+			Object field = fields[i];
+			if (field instanceof Enum)
+				CommunicationCodec.writeVarInt(out, ((Enum<?>) field).ordinal());
+			else if (field instanceof Integer)
+				CommunicationCodec.writeVarInt(out, (Integer) field);
+			else if (field instanceof String)
+				CommunicationCodec.writeString(out, (String) field);
+			else if (field instanceof LocalDate)
+				CommunicationCodec.writeDate(out, (LocalDate) field);
+			else if (field instanceof LocalTime)
+				CommunicationCodec.writeTime(out, (LocalTime) field);
+		}
+		if ((mask & 1L << TABLES) != 0)
+			CommunicationCodec.writeStrings(out, tables);
+		if ((mask & 1L << SELECT_COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, selectColumns);
+		if ((mask & 1L << AGGREGATE_FUNCTIONS) != 0) {
+			CommunicationCodec.writeVarInt(out, aggregateFunctions.size());
+			for (AggregateFunction function : aggregateFunctions)
+				CommunicationCodec.writeVarInt(out, function.ordinal());
+		}
+		if ((mask & 1L << AGGREGATE_COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, aggregateColumns);
+		if ((mask & 1L << GROUP_BY_COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, groupByColumns);
+		if ((mask & 1L << ORDER_BY_COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, orderByColumns);
+		if ((mask & 1L << WHERE_COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, whereColumns);
+		if ((mask & 1L << WHERE_VALUES) != 0)
+			CommunicationCodec.writeValues(out, whereValues);
+		if ((mask & 1L << WHERE_OPERATORS) != 0)
+			CommunicationCodec.writeStrings(out, whereOperators);
+		if ((mask & 1L << COLUMNS) != 0)
+			CommunicationCodec.writeStrings(out, columns);
+		if ((mask & 1L << VALUES) != 0)
+			CommunicationCodec.writeValues(out, values);
+		if ((mask & 1L << REQUESTS_LIST) != 0) {
+			CommunicationCodec.writeVarInt(out, requestsList.size());
+			for (Communication request : requestsList)
+				request.encode(out);
+		}
+		if ((mask & 1L << RESULT_LIST) != 0)
+			CommunicationCodec.writeResultList(out, resultList);
+		if ((mask & 1L << BATCH_RESULTS) != 0) {
+			CommunicationCodec.writeVarInt(out, batchResults.size());
+			for (ArrayList<Object[]> results : batchResults) {
+				out.writeBoolean(results != null);
+				if (results != null)
+					CommunicationCodec.writeResultList(out, results);
+			}
+		}
+	}
+
+	/**
+	 * This method reads a Communication written by
+	 * {@link #encode(DataOutputStream)}, used by
+	 * {@link CommunicationCodec#decode(byte[])}
+	 * 
+	 * @param in the stream to read from
+	 * @return the decoded Communication
+	 * @throws IOException if the stream does not hold a valid Communication
+	 */
+	static Communication decode(DataInputStream in) throws IOException {
+		Communication communication = new Communication();
+		long mask = CommunicationCodec.readVarLong(in);
+		try {
+			if ((mask & 1L << UNIQUE_ID) != 0) {
+				if (in.readBoolean())
+					communication.uniqueId = new UUID(in.readLong(), in.readLong()).toString();
+				else
+					communication.uniqueId = CommunicationCodec.readString(in);
+			}
+			if ((mask & 1L << COMMUNICATION_TYPE) != 0)
+				communication.communicationType = CommunicationType.values()[CommunicationCodec.readVarInt(in)];
+			if ((mask & 1L << QUERY_TYPE) != 0)
+				communication.queryType = QueryType.values()[CommunicationCodec.readVarInt(in)];
+			if ((mask & 1L << SEMAPHORE_INDEX) != 0)
+				communication.semaphoreIndex = CommunicationCodec.readVarInt(in);
+			if ((mask & 1L << NOTIFICATION_TYPE) != 0)
+				communication.notificationType = NotificationType.values()[CommunicationCodec.readVarInt(in)];
+			if ((mask & 1L << CLIENT_MESSAGE_TYPE) != 0)
+				communication.clientMessageType = ClientMessageType.values()[CommunicationCodec.readVarInt(in)];
+			if ((mask & 1L << SERVER_MESSAGE_TYPE) != 0)
+				communication.serverMessageType = ServerMessageType.values()[CommunicationCodec.readVarInt(in)];
+			if ((mask & 1L << SECONDARY_REQUEST) != 0)
+				communication.secondaryRequest = SecondaryRequest.values()[CommunicationCodec.readVarInt(in)];
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid enum constant", e);
+		}
+		if ((mask & 1L << PARK_ID) != 0)
+			communication.parkId = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << BOOKING_ID) != 0)
+			communication.bookingId = CommunicationCodec.readString(in);
+		if ((mask & 1L << DAY_OF_VISIT) != 0)
+			communication.dayOfVisit = CommunicationCodec.readDate(in);
+		if ((mask & 1L << TIME_OF_VISIT) != 0)
+			communication.timeOfVisit = CommunicationCodec.readTime(in);
+		if ((mask & 1L << DAY_OF_BOOKING) != 0)
+			communication.dayOfBooking = CommunicationCodec.readDate(in);
+		if ((mask & 1L << VISIT_TYPE) != 0)
+			communication.visitType = CommunicationCodec.readString(in);
+		if ((mask & 1L << NUMBER_OF_VISITORS) != 0)
+			communication.numberOfVisitors = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << ID_NUMBER) != 0)
+			communication.idNumber = CommunicationCodec.readString(in);
+		if ((mask & 1L << FIRST_NAME) != 0)
+			communication.firstName = CommunicationCodec.readString(in);
+		if ((mask & 1L << LAST_NAME) != 0)
+			communication.lastName = CommunicationCodec.readString(in);
+		if ((mask & 1L << EMAIL_ADDRESS) != 0)
+			communication.emailAddress = CommunicationCodec.readString(in);
+		if ((mask & 1L << PHONE_NUMBER) != 0)
+			communication.phoneNumber = CommunicationCodec.readString(in);
+		if ((mask & 1L << FINAL_PRICE) != 0)
+			communication.finalPrice = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << PARK_NAME) != 0)
+			communication.parkName = CommunicationCodec.readString(in);
+		if ((mask & 1L << PARK_LOCATION) != 0)
+			communication.parkLocation = CommunicationCodec.readString(in);
+		if ((mask & 1L << PARK_CAPACITIES) != 0)
+			communication.parkCapacities = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << LAST_DAY_OF_RANGE) != 0)
+			communication.lastDayOfRange = CommunicationCodec.readDate(in);
+		if ((mask & 1L << OPEN_HOUR) != 0)
+			communication.openHour = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << CLOSE_HOUR) != 0)
+			communication.closeHour = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << MINUTES_GAP) != 0)
+			communication.minutesGap = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << PROTOCOL_VERSION) != 0)
+			communication.protocolVersion = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << CHUNK_INDEX) != 0)
+			communication.chunkIndex = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << TOPIC) != 0)
+			communication.topic = CommunicationCodec.readString(in);
+		if ((mask & 1L << INCREMENT_COLUMN) != 0)
+			communication.incrementColumn = CommunicationCodec.readString(in);
+		if ((mask & 1L << INCREMENT_DELTA) != 0)
+			communication.incrementDelta = CommunicationCodec.readVarInt(in);
+		if ((mask & 1L << INCREMENT_LIMIT) != 0)
+			communication.incrementLimit = CommunicationCodec.readString(in);
+
+		communication.orderDescending = (mask & 1L << ORDER_DESCENDING) != 0;
+		communication.isCritical = (mask & 1L << IS_CRITICAL) != 0;
+		communication.queryResult = (mask & 1L << QUERY_RESULT) != 0;
+		communication.paid = (mask & 1L << PAID) != 0;
+		communication.streamed = (mask & 1L << STREAMED) != 0;
+		communication.lastChunk = (mask & 1L << LAST_CHUNK) != 0;
+		communication.compressionEnabled = (mask & 1L << COMPRESSION_ENABLED) != 0;
+
+		if ((mask & 1L << TABLES) != 0)
+			communication.tables = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << SELECT_COLUMNS) != 0)
+			communication.selectColumns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << AGGREGATE_FUNCTIONS) != 0) {
+			int size = CommunicationCodec.readVarInt(in);
+			communication.aggregateFunctions = new ArrayList<>();
+			try {
+				for (int i = 0; i < size; i++)
+					communication.aggregateFunctions.add(AggregateFunction.values()[CommunicationCodec.readVarInt(in)]);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Invalid aggregate function", e);
+			}
+		}
+		if ((mask & 1L << AGGREGATE_COLUMNS) != 0)
+			communication.aggregateColumns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << GROUP_BY_COLUMNS) != 0)
+			communication.groupByColumns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << ORDER_BY_COLUMNS) != 0)
+			communication.orderByColumns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << WHERE_COLUMNS) != 0)
+			communication.whereColumns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << WHERE_VALUES) != 0)
+			communication.whereValues = CommunicationCodec.readValues(in);
+		if ((mask & 1L << WHERE_OPERATORS) != 0)
+			communication.whereOperators = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << COLUMNS) != 0)
+			communication.columns = CommunicationCodec.readStrings(in);
+		if ((mask & 1L << VALUES) != 0)
+			communication.values = CommunicationCodec.readValues(in);
+		if ((mask & 1L << REQUESTS_LIST) != 0) {
+			int size = CommunicationCodec.readVarInt(in);
+			communication.requestsList = new ArrayList<>();
+			for (int i = 0; i < size; i++)
+				communication.requestsList.add(decode(in));
+		}
+		if ((mask & 1L << RESULT_LIST) != 0)
+			communication.resultList = CommunicationCodec.readResultList(in);
+		if ((mask & 1L << BATCH_RESULTS) != 0) {
+			int size = CommunicationCodec.readVarInt(in);
+			communication.batchResults = new ArrayList<>();
+			for (int i = 0; i < size; i++)
+				communication.batchResults.add(in.readBoolean() ? CommunicationCodec.readResultList(in) : null);
+		}
+		return communication;
+	}
 }
\ No newline at end of file
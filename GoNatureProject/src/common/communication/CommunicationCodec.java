@@ -0,0 +1,460 @@
+package common.communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class encodes Communication objects in a compact binary form, used
+ * instead of Java serialization once the client and the server agreed on it
+ * when connecting. An encoded Communication starts with a header of two magic
+ * bytes and the codec's version, followed by a bit mask of the populated fields
+ * and their values. Numbers are written as variable length integers, and the
+ * columns of a result set are written one after the other, each with a single
+ * type tag.
+ */
+public final class CommunicationCodec {
+	/**
+	 * The version of the codec, sent when connecting
+	 */
+	public static final int version = 1;
+
+	private static final byte firstMagic = 'G', secondMagic = 'N';
+	// the most values of a decoded result set. A column whose values are all NULL
+	// is encoded by its tag only, so its rows are not bounded by the frame's length
+	private static final long maximumValues = 32 * 1024 * 1024;
+
+	// the type tags of the encoded values
+	private static final byte NULL = 0, STRING = 1, INTEGER = 2, LONG = 3, DOUBLE = 4, FLOAT = 5, BOOLEAN = 6,
+			SQL_DATE = 7, SQL_TIME = 8, TIMESTAMP = 9, LOCAL_DATE = 10, LOCAL_TIME = 11, BIG_DECIMAL = 12,
+			SERIALIZED = 13, MIXED = 14;
+
+	private CommunicationCodec() {
+	}
+
+	/**
+	 * @param frame a received message
+	 * @return true if the message was encoded by this codec, false if it is a Java
+	 *         serialized object
+	 */
+	public static boolean isEncoded(byte[] frame) {
+		return frame.length >= 3 && frame[0] == firstMagic && frame[1] == secondMagic;
+	}
+
+	/**
+	 * This method encodes a Communication object
+	 *
+	 * @param communication the Communication to encode
+	 * @return the encoded Communication
+	 * @throws IOException if one of the values can't be encoded
+	 */
+	public static byte[] encode(Communication communication) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(firstMagic);
+		out.writeByte(secondMagic);
+		out.writeByte(version);
+		communication.encode(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * This method decodes a Communication object
+	 *
+	 * @param frame the encoded Communication
+	 * @return the decoded Communication
+	 * @throws IOException if the frame is not a valid encoded Communication
+	 */
+	public static Communication decode(byte[] frame) throws IOException {
+		if (!isEncoded(frame))
+			throw new IOException("Not an encoded Communication");
+		if (frame[2] != version)
+			throw new IOException("Unsupported codec version " + frame[2]);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, 3, frame.length - 3));
+		return Communication.decode(in);
+	}
+
+	/////////////////////////
+	/// PRIMITIVE METHODS ///
+	/////////////////////////
+
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		long zigZag = (value << 1) ^ (value >> 63); // small negative numbers are short too
+		while ((zigZag & ~0x7FL) != 0) {
+			out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		out.writeByte((int) zigZag);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException {
+		long zigZag = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			zigZag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return (zigZag >>> 1) ^ -(zigZag & 1);
+		}
+		throw new IOException("Invalid variable length number");
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, utf8.length);
+		out.write(utf8);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		byte[] utf8 = new byte[readLength(in)];
+		in.readFully(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	private static int readLength(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0 || length > in.available())
+			throw new IOException("Invalid length " + length);
+		return length;
+	}
+
+	static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+		writeVarInt(out, values.size());
+		for (String value : values)
+			writeValue(out, value);
+	}
+
+	static ArrayList<String> readStrings(DataInputStream in) throws IOException {
+		int size = readLength(in);
+		ArrayList<String> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			values.add((String) readValue(in));
+		return values;
+	}
+
+	static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+		writeVarLong(out, date.toEpochDay());
+	}
+
+	static LocalDate readDate(DataInputStream in) throws IOException {
+		return LocalDate.ofEpochDay(readVarLong(in));
+	}
+
+	static void writeTime(DataOutputStream out, LocalTime time) throws IOException {
+		writeVarLong(out, time.toNanoOfDay());
+	}
+
+	static LocalTime readTime(DataInputStream in) throws IOException {
+		return LocalTime.ofNanoOfDay(readVarLong(in));
+	}
+
+	/////////////////////
+	/// VALUE METHODS ///
+	/////////////////////
+
+	/**
+	 * @return the type tag of the value
+	 */
+	private static byte tagOf(Object value) {
+		if (value == null)
+			return NULL;
+		if (value instanceof String)
+			return STRING;
+		if (value instanceof Integer)
+			return INTEGER;
+		if (value instanceof Long)
+			return LONG;
+		if (value instanceof Double)
+			return DOUBLE;
+		if (value instanceof Float)
+			return FLOAT;
+		if (value instanceof Boolean)
+			return BOOLEAN;
+		if (value instanceof Date)
+			return SQL_DATE;
+		if (value instanceof Time)
+			return SQL_TIME;
+		if (value instanceof Timestamp)
+			return TIMESTAMP;
+		if (value instanceof LocalDate)
+			return LOCAL_DATE;
+		if (value instanceof LocalTime)
+			return LOCAL_TIME;
+		if (value instanceof BigDecimal)
+			return BIG_DECIMAL;
+		return SERIALIZED;
+	}
+
+	/**
+	 * Writes a value, with its type tag
+	 */
+	static void writeValue(DataOutputStream out, Object value) throws IOException {
+		byte tag = tagOf(value);
+		out.writeByte(tag);
+		writeUntagged(out, tag, value);
+	}
+
+	/**
+	 * Reads a value, with its type tag
+	 */
+	static Object readValue(DataInputStream in) throws IOException {
+		return readUntagged(in, in.readByte());
+	}
+
+	private static void writeUntagged(DataOutputStream out, byte tag, Object value) throws IOException {
+		switch (tag) {
+		case NULL:
+			break;
+		case STRING:
+			writeString(out, (String) value);
+			break;
+		case INTEGER:
+			writeVarInt(out, (Integer) value);
+			break;
+		case LONG:
+			writeVarLong(out, (Long) value);
+			break;
+		case DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case FLOAT:
+			out.writeFloat((Float) value);
+			break;
+		case BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case SQL_DATE:
+			writeDate(out, ((Date) value).toLocalDate());
+			break;
+		case SQL_TIME:
+			writeTime(out, ((Time) value).toLocalTime());
+			break;
+		case TIMESTAMP: {
+			LocalDateTime dateTime = ((Timestamp) value).toLocalDateTime();
+			writeDate(out, dateTime.toLocalDate());
+			writeTime(out, dateTime.toLocalTime());
+			break;
+		}
+		case LOCAL_DATE:
+			writeDate(out, (LocalDate) value);
+			break;
+		case LOCAL_TIME:
+			writeTime(out, (LocalTime) value);
+			break;
+		case BIG_DECIMAL: {
+			BigDecimal decimal = (BigDecimal) value;
+			writeVarInt(out, decimal.scale());
+			byte[] unscaled = decimal.unscaledValue().toByteArray();
+			writeVarInt(out, unscaled.length);
+			out.write(unscaled);
+			break;
+		}
+		default: { // any other type is sent with Java serialization
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+				objectOut.writeObject(value);
+			}
+			writeVarInt(out, bytes.size());
+			bytes.writeTo(out);
+			break;
+		}
+		}
+	}
+
+	private static Object readUntagged(DataInputStream in, byte tag) throws IOException {
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return readVarInt(in);
+		case LONG:
+			return readVarLong(in);
+		case DOUBLE:
+			return in.readDouble();
+		case FLOAT:
+			return in.readFloat();
+		case BOOLEAN:
+			return in.readBoolean();
+		case SQL_DATE:
+			return Date.valueOf(readDate(in));
+		case SQL_TIME:
+			return Time.valueOf(readTime(in));
+		case TIMESTAMP:
+			return Timestamp.valueOf(LocalDateTime.of(readDate(in), readTime(in)));
+		case LOCAL_DATE:
+			return readDate(in);
+		case LOCAL_TIME:
+			return readTime(in);
+		case BIG_DECIMAL: {
+			int scale = readVarInt(in);
+			byte[] unscaled = new byte[readLength(in)];
+			in.readFully(unscaled);
+			return new BigDecimal(new BigInteger(unscaled), scale);
+		}
+		case SERIALIZED: {
+			byte[] bytes = new byte[readLength(in)];
+			in.readFully(bytes);
+			try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+				return objectIn.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+		}
+		default:
+			throw new IOException("Invalid value tag " + tag);
+		}
+	}
+
+	static void writeValues(DataOutputStream out, List<Object> values) throws IOException {
+		writeVarInt(out, values.size());
+		for (Object value : values)
+			writeValue(out, value);
+	}
+
+	static ArrayList<Object> readValues(DataInputStream in) throws IOException {
+		int size = readLength(in);
+		ArrayList<Object> values = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			values.add(readValue(in));
+		return values;
+	}
+
+	//////////////////////////
+	/// RESULT SET METHODS ///
+	//////////////////////////
+
+	/**
+	 * Writes the rows of a result set column by column. A column whose values are
+	 * all of the same type is written with a single type tag and a bit map of its
+	 * null values, otherwise each value is written with its own tag.
+	 */
+	static void writeResultList(DataOutputStream out, List<Object[]> rows) throws IOException {
+		writeVarInt(out, rows.size());
+		if (rows.isEmpty())
+			return;
+		int columns = rows.get(0).length;
+		for (Object[] row : rows) {
+			if (row.length != columns) { // rows of different lengths are written row by row
+				columns = -1;
+				break;
+			}
+		}
+		writeVarInt(out, columns);
+
+		if (columns == -1) {
+			for (Object[] row : rows) {
+				writeVarInt(out, row.length);
+				for (Object value : row)
+					writeValue(out, value);
+			}
+			return;
+		}
+
+		for (int column = 0; column < columns; column++) {
+			byte tag = NULL;
+			boolean hasNulls = false;
+			for (Object[] row : rows) {
+				byte valueTag = tagOf(row[column]);
+				if (valueTag == NULL)
+					hasNulls = true;
+				else if (tag == NULL)
+					tag = valueTag;
+				else if (tag != valueTag)
+					tag = MIXED;
+			}
+			if (tag == SERIALIZED)
+				tag = MIXED;
+			out.writeByte(tag);
+
+			if (tag == MIXED) {
+				for (Object[] row : rows)
+					writeValue(out, row[column]);
+			} else if (tag != NULL) {
+				out.writeBoolean(hasNulls);
+				if (hasNulls) {
+					byte[] nulls = new byte[(rows.size() + 7) / 8];
+					for (int i = 0; i < rows.size(); i++)
+						if (rows.get(i)[column] == null)
+							nulls[i / 8] |= 1 << (i % 8);
+					out.write(nulls);
+				}
+				for (Object[] row : rows)
+					if (row[column] != null)
+						writeUntagged(out, tag, row[column]);
+			}
+		}
+	}
+
+	static ArrayList<Object[]> readResultList(DataInputStream in) throws IOException {
+		int size = readVarInt(in);
+		if (size < 0 || size > maximumValues)
+			throw new IOException("Invalid number of rows " + size);
+		if (size == 0)
+			return new ArrayList<>();
+		int columns = readVarInt(in);
+
+		if (columns == -1) {
+			// every row is written with its length at least
+			if (size > in.available())
+				throw new IOException("Invalid number of rows " + size);
+			ArrayList<Object[]> rows = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				Object[] row = new Object[readLength(in)];
+				for (int column = 0; column < row.length; column++)
+					row[column] = readValue(in);
+				rows.add(row);
+			}
+			return rows;
+		}
+
+		if (columns < 0 || columns > in.available())
+			throw new IOException("Invalid number of columns " + columns);
+		if ((long) size * Math.max(columns, 1) > maximumValues)
+			throw new IOException("Invalid number of rows " + size);
+		ArrayList<Object[]> rows = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			rows.add(new Object[columns]);
+		for (int column = 0; column < columns; column++) {
+			byte tag = in.readByte();
+			if (tag == MIXED) {
+				for (Object[] row : rows)
+					row[column] = readValue(in);
+			} else if (tag != NULL) {
+				byte[] nulls = null;
+				if (in.readBoolean()) {
+					nulls = new byte[(size + 7) / 8];
+					in.readFully(nulls);
+				}
+				for (int i = 0; i < size; i++)
+					if (nulls == null || (nulls[i / 8] & (1 << (i % 8))) == 0)
+						rows.get(i)[column] = readUntagged(in, tag);
+			}
+		}
+		return rows;
+	}
+}
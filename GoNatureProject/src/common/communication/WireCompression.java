@@ -0,0 +1,129 @@
+package common.communication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class compresses the serialized messages sent over a connection, once
+ * the client and the server agreed on it when connecting. Only messages longer
+ * than the threshold are compressed, with deflate at its fastest level, and a
+ * compressed message is sent only if it's shorter than the original. A
+ * compressed message starts with a header of two magic bytes and the length of
+ * the original message, so it's recognized by the receiving side. The
+ * compression ratio and time are counted for the server's statistics.
+ */
+public class WireCompression {
+	/**
+	 * The length (in bytes) of the shortest message that is compressed
+	 */
+	public static final int threshold = 4096;
+
+	private static final byte firstMagic = 'G', secondMagic = 'Z';
+	private static final int headerLength = 6;
+	// the longest original message accepted, as the frames of the connection
+	private static final int maximumLength = 32 * 1024 * 1024;
+
+	// compression statistics
+	private final AtomicLong compressedMessages = new AtomicLong();
+	private final AtomicLong skippedMessages = new AtomicLong(); // not shorter after compression
+	private final AtomicLong originalBytes = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+	private final AtomicLong compressionNanos = new AtomicLong();
+
+	/**
+	 * @param frame a received message
+	 * @return true if the message was compressed
+	 */
+	public static boolean isCompressed(byte[] frame) {
+		return frame.length >= headerLength && frame[0] == firstMagic && frame[1] == secondMagic;
+	}
+
+	/**
+	 * This method compresses a message, if it's longer than the threshold and the
+	 * compression makes it shorter
+	 *
+	 * @param frame the serialized message
+	 * @return the compressed message, or the original message if it was not
+	 *         compressed
+	 */
+	public byte[] compress(byte[] frame) {
+		if (frame.length < threshold)
+			return frame;
+		long start = System.nanoTime();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(frame);
+			deflater.finish();
+			// a compressed message longer than the original is not sent
+			byte[] compressed = new byte[frame.length];
+			ByteBuffer.wrap(compressed).put(firstMagic).put(secondMagic).putInt(frame.length);
+			int length = headerLength;
+			while (!deflater.finished() && length < compressed.length)
+				length += deflater.deflate(compressed, length, compressed.length - length);
+			compressionNanos.addAndGet(System.nanoTime() - start);
+			if (!deflater.finished()) {
+				skippedMessages.incrementAndGet();
+				return frame;
+			}
+			compressedMessages.incrementAndGet();
+			originalBytes.addAndGet(frame.length);
+			compressedBytes.addAndGet(length);
+			byte[] result = new byte[length];
+			System.arraycopy(compressed, 0, result, 0, length);
+			return result;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * This method restores a compressed message
+	 *
+	 * @param frame the compressed message
+	 * @return the original message
+	 * @throws IOException if the message is not a valid compressed message
+	 */
+	public static byte[] decompress(byte[] frame) throws IOException {
+		if (!isCompressed(frame))
+			throw new IOException("Not a compressed message");
+		int length = ByteBuffer.wrap(frame, 2, 4).getInt();
+		if (length < 0 || length > maximumLength)
+			throw new IOException("Invalid compressed message length " + length);
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(frame, headerLength, frame.length - headerLength);
+			byte[] original = new byte[length];
+			int inflated = 0;
+			while (inflated < length && !inflater.finished()) {
+				int count = inflater.inflate(original, inflated, length - inflated);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				inflated += count;
+			}
+			if (inflated != length || !inflater.finished())
+				throw new IOException("Compressed message is corrupted");
+			return original;
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @return a summary of the compression statistics
+	 */
+	public String getStatistics() {
+		long original = originalBytes.get(), compressed = compressedBytes.get();
+		long messages = compressedMessages.get(), skipped = skippedMessages.get();
+		long attempts = messages + skipped;
+		return "Wire compression: " + messages + " messages compressed, " + skipped + " not compressible, "
+				+ original + " bytes sent as " + compressed + " (ratio "
+				+ String.format("%.2f", compressed == 0 ? 0 : (double) original / compressed) + "), average time "
+				+ String.format("%.3f", attempts == 0 ? 0 : compressionNanos.get() / 1000000.0 / attempts) + " ms";
+	}
+}
@@ -0,0 +1,580 @@
+// This file contains material supporting section 3.8 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package ocsf.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+* The <code> SelectorTransport </code> class reads and writes the
+* messages of the clients connected to an <code> AbstractServer </code>
+* through non-blocking channels. A small number of selector threads
+* serve all the clients, so the number of connected clients does not
+* determine the number of threads.<p>
+*
+* Each message is sent as a frame: the length of the message in 4
+* bytes, followed by the message serialized by the server's
+* <code> serializeMessage </code> hook.<p>
+*
+* @see ocsf.server.AbstractServer#setSelectorThreads(int)
+*/
+final class SelectorTransport
+{
+  // CONSTANTS *******************************************************
+
+  /**
+   * The maximum length of a single frame. A client sending a longer
+   * frame is disconnected.
+   */
+  static final int MAXIMUM_FRAME = 32 * 1024 * 1024;
+
+  /**
+   * The size of the buffer each selector thread reads to.
+   */
+  private static final int READ_BUFFER = 16 * 1024;
+
+  /**
+   * The maximum length of the frames queued for a single client. A
+   * sender waits while a client does not read its queued frames.
+   */
+  static final int MAXIMUM_QUEUED = 4 * 1024 * 1024;
+
+  /**
+   * The time a sender waits for a client to read its queued frames,
+   * in milliseconds.
+   */
+  static final long SEND_TIMEOUT = 30000;
+
+  // INSTANCE VARIABLES *********************************************
+
+  /**
+   * The server the clients are connected to.
+   */
+  private AbstractServer server;
+
+  /**
+   * The selector threads. Each client is served by one of them.
+   */
+  private SelectorLoop[] loops;
+
+  /**
+   * The index of the selector thread of the next client.
+   */
+  private int nextLoop = 0;
+
+  /**
+   * The connected clients.
+   */
+  private Set<ConnectionToClient> clients =
+    ConcurrentHashMap.newKeySet();
+
+
+// CONSTRUCTOR ******************************************************
+
+  /**
+   * Constructs the transport and starts its selector threads.
+   *
+   * @param server the server the clients are connected to.
+   * @param selectorThreads the number of selector threads.
+   * @exception IOException if a selector can't be opened.
+   */
+  SelectorTransport(AbstractServer server, int selectorThreads)
+    throws IOException
+  {
+    this.server = server;
+    loops = new SelectorLoop[selectorThreads];
+    for (int i=0; i<loops.length; i++)
+    {
+      loops[i] = new SelectorLoop("SelectorTransport-" + (i + 1));
+      loops[i].start();
+    }
+  }
+
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Adds a newly accepted client. The client is announced to the
+   * server before any of its messages is read.
+   *
+   * @param socketChannel the channel of the accepted client.
+   * @exception IOException if the channel can't be configured.
+   */
+  void register(SocketChannel socketChannel) throws IOException
+  {
+    socketChannel.configureBlocking(false);
+    socketChannel.socket().setTcpNoDelay(true);
+
+    SelectorLoop loop = loops[nextLoop];
+    nextLoop = (nextLoop + 1) % loops.length;
+
+    ClientChannel channel = new ClientChannel(socketChannel, loop);
+    ConnectionToClient client = new ConnectionToClient(channel, server);
+    channel.client = client;
+    clients.add(client);
+
+    server.clientConnected(client);
+    loop.register(channel);
+  }
+
+  /**
+   * Returns the connected clients.
+   *
+   * @return an array of the connected clients.
+   */
+  ConnectionToClient[] getClients()
+  {
+    return clients.toArray(new ConnectionToClient[0]);
+  }
+
+  /**
+   * Returns the number of connected clients.
+   *
+   * @return the number of connected clients.
+   */
+  int getNumberOfClients()
+  {
+    return clients.size();
+  }
+
+  /**
+   * Stops the selector threads. The clients are expected to be closed
+   * already.
+   */
+  void close()
+  {
+    for (int i=0; i<loops.length; i++)
+      loops[i].close();
+  }
+
+  /**
+   * Serializes a message.
+   *
+   * @param msg the message.
+   * @return the serialized message.
+   * @exception IOException if the message can't be serialized.
+   */
+  static byte[] serialize(Object msg) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(msg);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Deserializes a message.
+   *
+   * @param frame the serialized message.
+   * @return the message.
+   * @exception IOException if the message can't be deserialized.
+   * @exception ClassNotFoundException if the class of the message
+   *   is not found.
+   */
+  static Object deserialize(byte[] frame)
+    throws IOException, ClassNotFoundException
+  {
+    ObjectInputStream input =
+      new ObjectInputStream(new ByteArrayInputStream(frame));
+    try
+    {
+      return input.readObject();
+    }
+    finally
+    {
+      input.close();
+    }
+  }
+
+
+// INNER CLASS - CLIENT CHANNEL -------------------------------------
+
+  /**
+   * The channel of a single client, with its partially read frame and
+   * the frames waiting to be written.
+   */
+  final class ClientChannel
+  {
+    private SocketChannel socketChannel;
+    private SelectorLoop loop;
+    private SelectionKey key;
+    private ConnectionToClient client;
+
+    private ByteBuffer header = ByteBuffer.allocate(4);
+    private ByteBuffer body;
+    private Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    // the length of the queued frames, guarded by the queue lock. A lock
+    // is used instead of a synchronized block, so a virtual thread
+    // waiting for the client does not hold its carrier thread
+    private long queuedBytes = 0;
+    private ReentrantLock queueLock = new ReentrantLock();
+    private Condition queueDrained = queueLock.newCondition();
+
+    private ClientChannel(SocketChannel socketChannel, SelectorLoop loop)
+    {
+      this.socketChannel = socketChannel;
+      this.loop = loop;
+    }
+
+    /**
+     * Returns the socket of the channel.
+     *
+     * @return the socket.
+     */
+    Socket socket()
+    {
+      return socketChannel.socket();
+    }
+
+    /**
+     * Queues a serialized message to be written by the selector thread.
+     * If the frames queued for the client are too long, the sender waits
+     * for the client to read them, so a slow client does not fill the
+     * server's memory. The selector thread never waits, since it is the
+     * one writing the frames.
+     *
+     * @param payload the serialized message.
+     * @param canWait false to return at once if the queue is too long.
+     * @return true if the message was queued, false if the queue is too
+     *   long and the sender can't wait.
+     * @exception IOException if the channel is closed, or the client did
+     *   not read its queued frames in time.
+     */
+    boolean send(byte[] payload, boolean canWait) throws IOException
+    {
+      if (!socketChannel.isOpen())
+        throw new ClosedChannelException();
+
+      ByteBuffer frame = ByteBuffer.allocate(4 + payload.length);
+      frame.putInt(payload.length).put(payload).flip();
+      if (!reserve(frame.capacity(), Thread.currentThread() == loop, canWait))
+        return false;
+      writes.add(frame);
+      loop.wantWrite(this);
+      return true;
+    }
+
+    /**
+     * Adds a frame to the length of the queued frames, after waiting for
+     * room in the queue. A frame longer than the limit is queued once the
+     * queue is empty.
+     *
+     * @param length the length of the frame.
+     * @param isForced true to add the frame without waiting.
+     * @param canWait false to return at once if the queue is too long.
+     * @return true if the frame was added.
+     * @exception IOException if the channel is closed, or the client did
+     *   not read its queued frames in time.
+     */
+    private boolean reserve(int length, boolean isForced, boolean canWait)
+      throws IOException
+    {
+      queueLock.lock();
+      try
+      {
+        long deadline = System.nanoTime()
+          + TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT);
+        while (!isForced && queuedBytes > 0
+          && queuedBytes + length > MAXIMUM_QUEUED)
+        {
+          if (!canWait)
+            return false;
+          if (!socketChannel.isOpen())
+            throw new ClosedChannelException();
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0)
+            throw new IOException("The client did not read "
+              + queuedBytes + " queued bytes in time");
+          try
+          {
+            queueDrained.awaitNanos(remaining);
+          }
+          catch (InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+        queuedBytes += length;
+        return true;
+      }
+      finally
+      {
+        queueLock.unlock();
+      }
+    }
+
+    /**
+     * Removes a written frame from the length of the queued frames, and
+     * wakes the waiting senders.
+     *
+     * @param length the length of the frame.
+     */
+    private void drained(int length)
+    {
+      queueLock.lock();
+      try
+      {
+        queuedBytes -= length;
+        queueDrained.signalAll();
+      }
+      finally
+      {
+        queueLock.unlock();
+      }
+    }
+
+    /**
+     * Closes the channel. If the connection is already closed, this
+     * call has no effect.
+     */
+    void close()
+    {
+      clients.remove(client);
+      if (key != null)
+        key.cancel();
+      try
+      {
+        socketChannel.close();
+      }
+      catch (IOException e) { }
+      drained(0); // the waiting senders fail
+    }
+
+    /**
+     * Reads the available bytes, and hands every completed frame to
+     * the server. Only the partially read frame is kept by the channel.
+     *
+     * @param readBuffer the buffer of the selector thread.
+     * @exception IOException if the channel was closed by the client,
+     *   or sent an invalid frame.
+     */
+    private void read(ByteBuffer readBuffer)
+      throws IOException, ClassNotFoundException
+    {
+      int count;
+      while ((count = socketChannel.read(readBuffer)) > 0)
+      {
+        readBuffer.flip();
+        while (readBuffer.hasRemaining())
+        {
+          if (body == null)
+          {
+            transfer(readBuffer, header);
+            if (header.hasRemaining())
+              break;
+            int length = header.getInt(0);
+            if (length < 0 || length > MAXIMUM_FRAME)
+              throw new IOException("Invalid frame length " + length);
+            body = ByteBuffer.allocate(length);
+          }
+
+          transfer(readBuffer, body);
+          if (body.hasRemaining())
+            break;
+
+          Object msg = server.deserializeMessage(body.array(), client);
+          header.clear();
+          body = null;
+          server.receiveMessageFromClient(msg, client);
+        }
+        readBuffer.clear();
+      }
+      if (count == -1)
+        throw new EOFException();
+    }
+
+    /**
+     * Writes the queued frames, as long as the channel accepts them.
+     *
+     * @return true if all the queued frames were written.
+     * @exception IOException if the channel is closed.
+     */
+    private boolean flush() throws IOException
+    {
+      ByteBuffer frame;
+      while ((frame = writes.peek()) != null)
+      {
+        socketChannel.write(frame);
+        if (frame.hasRemaining())
+          return false;
+        writes.poll();
+        drained(frame.capacity());
+      }
+      return true;
+    }
+
+    /**
+     * Closes the channel after a failure, and reports it to the server.
+     */
+    private void failed(Exception exception)
+    {
+      if (socketChannel.isOpen())
+        client.connectionFailed(exception);
+    }
+  }
+
+  /**
+   * Copies bytes from one buffer to another, as much as the target has
+   * room for.
+   */
+  private static void transfer(ByteBuffer source, ByteBuffer target)
+  {
+    int count = Math.min(source.remaining(), target.remaining());
+    ByteBuffer slice = source.duplicate();
+    slice.limit(slice.position() + count);
+    target.put(slice);
+    source.position(source.position() + count);
+  }
+
+
+// INNER CLASS - SELECTOR LOOP --------------------------------------
+
+  /**
+   * A selector thread, reading from and writing to its clients'
+   * channels.
+   */
+  private final class SelectorLoop extends Thread
+  {
+    private Selector selector;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER);
+    private Queue<ClientChannel> registrations =
+      new ConcurrentLinkedQueue<ClientChannel>();
+    private Queue<ClientChannel> pendingWrites =
+      new ConcurrentLinkedQueue<ClientChannel>();
+    private volatile boolean readyToStop = false;
+
+    private SelectorLoop(String name) throws IOException
+    {
+      super(name);
+      setDaemon(true);
+      selector = Selector.open();
+    }
+
+    /**
+     * Adds a channel to this selector thread.
+     */
+    private void register(ClientChannel channel)
+    {
+      registrations.add(channel);
+      selector.wakeup();
+    }
+
+    /**
+     * Asks this selector thread to write the queued frames of a channel.
+     */
+    private void wantWrite(ClientChannel channel)
+    {
+      pendingWrites.add(channel);
+      selector.wakeup();
+    }
+
+    /**
+     * Stops this selector thread.
+     */
+    private void close()
+    {
+      readyToStop = true;
+      selector.wakeup();
+    }
+
+    /**
+     * Waits for the channels to be ready, and reads or writes them.
+     */
+    public void run()
+    {
+      try
+      {
+        while (!readyToStop)
+        {
+          selector.select();
+
+          ClientChannel channel;
+          while ((channel = registrations.poll()) != null)
+          {
+            try
+            {
+              channel.key = channel.socketChannel.register(
+                selector, SelectionKey.OP_READ, channel);
+              // frames sent before the registration
+              if (!channel.writes.isEmpty())
+                write(channel);
+            }
+            catch (IOException e)
+            {
+              channel.failed(e);
+            }
+          }
+
+          while ((channel = pendingWrites.poll()) != null)
+            write(channel);
+
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext())
+          {
+            SelectionKey key = keys.next();
+            keys.remove();
+            channel = (ClientChannel)key.attachment();
+            if (!key.isValid())
+              continue;
+            try
+            {
+              if (key.isReadable())
+                channel.read(readBuffer);
+              if (key.isValid() && key.isWritable())
+                write(channel);
+            }
+            catch (Exception e)
+            {
+              channel.failed(e);
+            }
+          }
+        }
+      }
+      catch (IOException e)
+      {
+        e.printStackTrace();
+      }
+      finally
+      {
+        try
+        {
+          selector.close();
+        }
+        catch (IOException e) { }
+      }
+    }
+
+    /**
+     * Writes the queued frames of a channel, and waits for the channel
+     * to be writable again if not all of them were written.
+     */
+    private void write(ClientChannel channel)
+    {
+      if (channel.key == null || !channel.key.isValid())
+        return;
+      try
+      {
+        if (channel.flush())
+          channel.key.interestOps(SelectionKey.OP_READ);
+        else
+          channel.key.interestOps(
+            SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+      catch (Exception e)
+      {
+        channel.failed(e);
+      }
+    }
+  }
+}
+// End of SelectorTransport class
@@ -0,0 +1,115 @@
+package serverSide.control;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * This class bounds the requests waiting or being handled by the server's
+ * workers, for every connection and for the whole server, so a client flooding
+ * the server with requests can't delay the requests of the other clients. A
+ * request over one of the limits is rejected, and the client is answered with a
+ * BUSY message, so it can send the request again later. The limits are set by
+ * the "gonature.clientRequests" and "gonature.serverRequests" system
+ * properties.
+ */
+public class AdmissionControl {
+	// the requests waiting or being handled of each connection
+	private ConcurrentHashMap<ConnectionToClient, AtomicInteger> clients = new ConcurrentHashMap<>();
+	private final int clientLimit = Integer.getInteger("gonature.clientRequests", 32);
+	private final int serverLimit;
+
+	// admission statistics
+	private final AtomicInteger requests = new AtomicInteger(); // waiting or being handled
+	private final AtomicInteger peakRequests = new AtomicInteger();
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong clientRejects = new AtomicLong();
+	private final AtomicLong serverRejects = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param defaultServerLimit the server's limit, if not set by the system
+	 *                           property
+	 */
+	public AdmissionControl(int defaultServerLimit) {
+		serverLimit = Integer.getInteger("gonature.serverRequests", defaultServerLimit);
+	}
+
+	/**
+	 * This method admits a request of a client, if neither the client nor the
+	 * server are over their limits. Every admitted request must be released after
+	 * it was handled.
+	 *
+	 * @param client the connection the request was received from
+	 * @return true if the request was admitted, false if it should be answered
+	 *         with a BUSY message
+	 */
+	public boolean admit(ConnectionToClient client) {
+		AtomicInteger counter = clients.computeIfAbsent(client, key -> new AtomicInteger());
+		if (counter.incrementAndGet() > clientLimit) {
+			counter.decrementAndGet();
+			clientRejects.incrementAndGet();
+			return false;
+		}
+		int current = requests.incrementAndGet();
+		if (current > serverLimit) {
+			requests.decrementAndGet();
+			counter.decrementAndGet();
+			serverRejects.incrementAndGet();
+			return false;
+		}
+		peakRequests.accumulateAndGet(current, Math::max);
+		admitted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * This method releases an admitted request, after it was handled
+	 *
+	 * @param client the connection the request was received from
+	 */
+	public void release(ConnectionToClient client) {
+		AtomicInteger counter = clients.get(client);
+		if (counter != null)
+			counter.decrementAndGet();
+		requests.decrementAndGet();
+	}
+
+	/**
+	 * This method removes the counter of a client, after it was disconnected
+	 *
+	 * @param client the disconnected client
+	 */
+	public void removeClient(ConnectionToClient client) {
+		clients.remove(client);
+	}
+
+	/**
+	 * @return the number of requests waiting or being handled
+	 */
+	public int getQueueDepth() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of rejected requests, over a client's or the server's
+	 *         limit
+	 */
+	public long getRejects() {
+		return clientRejects.get() + serverRejects.get();
+	}
+
+	/**
+	 * @return a summary of the admission statistics. The peak is reset after every
+	 *         summary
+	 */
+	public String getStatistics() {
+		return "Admission control: " + admitted.get() + " requests admitted, " + requests.get()
+				+ " waiting or handled (peak " + peakRequests.getAndSet(requests.get()) + " of " + serverLimit
+				+ "), " + clientRejects.get() + " rejected over a client's limit of " + clientLimit + ", "
+				+ serverRejects.get() + " rejected over the server's limit";
+	}
+}
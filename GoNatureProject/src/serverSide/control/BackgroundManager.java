@@ -9,18 +9,22 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import clientSide.control.ParkController;
 import common.communication.Communication;
+import common.communication.Communication.AggregateFunction;
 import common.communication.Communication.CommunicationType;
 import common.communication.Communication.QueryType;
 import common.entities.Booking;
 import common.entities.Park;
 import common.entities.Booking.VisitType;
 import common.communication.CommunicationException;
+import common.communication.WireCompression;
 import serverSide.jdbc.DatabaseController;
 import serverSide.jdbc.DatabaseException;
 
@@ -33,6 +37,12 @@ public class BackgroundManager {
 	private final ScheduledExecutorService scheduler;
 	private NotificationsController notifications = NotificationsController.getInstance();
 	private DatabaseController database;
+	private OccupancyTimeline occupancy;
+	private WireCompression compression;
+	private PushChannel push;
+	private AdmissionControl admission;
+	private PriorityDispatcher dispatcher;
+	private IdempotencyCache idempotency;
 	private ParkController parkControl = ParkController.getInstance();
 	private ArrayList<Park> parks = new ArrayList<>();
 	public static int reminderCancellationTime = 2; // can be updated for future development
@@ -54,11 +64,26 @@ public class BackgroundManager {
 	/**
 	 * Constructor
 	 * 
-	 * @param database the initialized database instance of the runtime
+	 * @param database    the initialized database instance of the runtime
+	 * @param occupancy   the parks' occupancy timeline of the runtime
+	 * @param compression the wire compression of the server's connections
+	 * @param push        the push channel to the subscribed clients
+	 * @param admission   the admission control of the clients' requests
+	 * @param dispatcher  the dispatcher of the clients' requests, null in the
+	 *                    virtual threads mode
+	 * @param idempotency the responses kept for the clients' duplicate requests
 	 */
-	public BackgroundManager(DatabaseController database) {
+	public BackgroundManager(DatabaseController database, OccupancyTimeline occupancy, WireCompression compression,
+			PushChannel push, AdmissionControl admission, PriorityDispatcher dispatcher,
+			IdempotencyCache idempotency) {
 		scheduler = Executors.newScheduledThreadPool(1);
 		this.database = database;
+		this.occupancy = occupancy;
+		this.compression = compression;
+		this.push = push;
+		this.admission = admission;
+		this.dispatcher = dispatcher;
+		this.idempotency = idempotency;
 	}
 
 	//////////////////////////////////
@@ -94,6 +119,35 @@ public class BackgroundManager {
 			// executing the reminders checking background process
 			remindersCheckingBackground();
 
+			// rebuilding the occupancy timeline after the updates, this also moves its
+			// range forward as days pass
+			occupancy.build();
+
+			// reporting the database connections usage and the rows read by the queries
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + database.getPoolStatistics());
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + database.getQueryStatistics());
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + database.async().getStatistics());
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + database.getTransactionStatistics());
+
+			// reporting the compression of the clients' connections
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + compression.getStatistics());
+
+			// reporting the requests' queue depth and rejections
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + admission.getStatistics());
+			if (dispatcher != null)
+				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+						LocalTime.now().getSecond()) + ": " + dispatcher.getStatistics());
+
+			// reporting the duplicate requests answered with their kept responses
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": " + idempotency.getStatistics());
+
 		}, delay, minutesGapOfBookingTimes == 0 ? 60 : 60 / minutesGapOfBookingTimes, TimeUnit.MINUTES);
 	}
 
@@ -172,16 +226,9 @@ public class BackgroundManager {
 				}
 				deleteBookings.setTables(Arrays.asList(tableName));
 
-				String value = "(";
-				// creating the booking ids values
-				for (int i = 0; i < idNumbers.size(); i++) {
-					value += "'" + idNumbers.get(i) + "'";
-					if (i + 1 < idNumbers.size())
-						value += ", ";
-				}
-				value += ")";
+				// the booking ids are bound as the values of the IN list
 				deleteBookings.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("IN"),
-						Arrays.asList(value));
+						Arrays.asList(idNumbers));
 
 				boolean deleteResult = database.executeDeleteQuery(deleteBookings);
 				if (!deleteResult) {
@@ -274,6 +321,7 @@ public class BackgroundManager {
 			ArrayList<Object[]> results = database.executeSelectQuery(checkBookings);
 			ArrayList<String> idNumbers = new ArrayList<>();
 			ArrayList<Booking> cancelledBookings = new ArrayList<>();
+			boolean isSucceed = true; // the park's deletions and insertions are committed together
 
 			for (Object[] row : results) {
 				// for each booking, checking if its visit ending time has passed
@@ -321,18 +369,12 @@ public class BackgroundManager {
 				}
 				deleteBookings.setTables(Arrays.asList(tableName));
 
-				String value = "(";
-				// creating the booking ids values
-				for (int i = 0; i < idNumbers.size(); i++) {
-					value += "'" + idNumbers.get(i) + "'";
-					if (i + 1 < idNumbers.size())
-						value += ", ";
-				}
-				value += ")";
+				// the booking ids are bound as the values of the IN list
 				deleteBookings.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("IN"),
-						Arrays.asList(value));
+						Arrays.asList(idNumbers));
 
 				boolean deleteResult = database.executeDeleteQuery(deleteBookings);
+				isSucceed &= deleteResult;
 				if (!deleteResult) {
 					System.out.println("\n//////////////////////////////////////////////////");
 					System.out.println("EXECUTING THE FOLLOWING QUERY FAILED:");
@@ -345,8 +387,10 @@ public class BackgroundManager {
 				}
 			}
 
-			// if there were bookings to delete, inserting them to the cancelled table
+			// if there were bookings to delete, inserting them to the cancelled table, all
+			// together in a batch
 			if (!cancelledBookings.isEmpty()) {
+				ArrayList<Communication> insertsCancelled = new ArrayList<>();
 				for (Booking cancelledBooking : cancelledBookings) {
 					// creating a communication request
 					Communication insertCancelled = new Communication(CommunicationType.SELF);
@@ -368,34 +412,30 @@ public class BackgroundManager {
 									cancelledBooking.getFirstName(), cancelledBooking.getLastName(),
 									cancelledBooking.getEmailAddress(), cancelledBooking.getPhoneNumber(),
 									"Did not arrive"));
+					insertsCancelled.add(insertCancelled);
+				}
 
-					// sending the request to the database
-					boolean insertResult = database.executeInsertQuery(insertCancelled);
-					if (!insertResult) {
-						System.out.println("\n//////////////////////////////////////////////////");
-						System.out.println("EXECUTING THE FOLLOWING QUERY FAILED:");
-						try {
+				// sending the requests to the database
+				boolean insertResult = database.executeBatch(insertsCancelled);
+				isSucceed &= insertResult;
+				if (!insertResult) {
+					System.out.println("\n//////////////////////////////////////////////////");
+					System.out.println("EXECUTING THE FOLLOWING QUERIES FAILED:");
+					try {
+						for (Communication insertCancelled : insertsCancelled)
 							System.out.println(insertCancelled.combineQuery());
-						} catch (CommunicationException e) {
-							e.printStackTrace();
-						}
-						System.out.println("//////////////////////////////////////////////////\n");
+					} catch (CommunicationException e) {
+						e.printStackTrace();
 					}
+					System.out.println("//////////////////////////////////////////////////\n");
 				}
 			}
-		}
 
-		// commiting all the waiting queries
-		try {
-			database.commit();
-		} catch (SQLException e) {
-			try {
-				// if a problem occures, rolling back all queries
-				database.rollback();
-			} catch (SQLException e1) {
-				e1.printStackTrace();
-			}
+			// commiting the park's queries, or rolling them back if one of them failed, so
+			// a booking is never deleted without being inserted to the cancelled table
+			endTransaction(isSucceed);
 		}
+
 		try {
 			// toggeling auto commit to allow other transactions
 			database.toggleAutoCommit(true);
@@ -488,17 +528,12 @@ public class BackgroundManager {
 								toRemind.getNumberOfVisitors(), toRemind.getFinalPrice(), toRemind.isPaid()));
 			}
 
-			// creating the IN (...) part to the query, to update the visitor has been
+			// creating the IN (...) list of the query, to update the visitor has been
 			// reminded
 			int size = remindingBookings.size();
-			String bookingIDs = "(";
-			// creating the booking ids values
-			for (int i = 0; i < size; i++) {
-				bookingIDs += "'" + remindingBookings.get(i).getBookingId() + "'";
-				if (i + 1 < size)
-					bookingIDs += ", ";
-			}
-			bookingIDs += ")";
+			ArrayList<String> bookingIDs = new ArrayList<>();
+			for (Booking toRemind : remindingBookings)
+				bookingIDs.add(toRemind.getBookingId());
 
 			// creating the communication request
 			Communication updateReminded = new Communication(CommunicationType.SELF);
@@ -595,11 +630,13 @@ public class BackgroundManager {
 			transferring.add(toBeTransferred);
 		}
 
-		int parkIndex = 0;
 		ArrayList<String> bookingIDs = new ArrayList<>(); // will hold all the booking ids to be deleted
-		for (ArrayList<Booking> toBeTransferred : transferring) {
+		for (int parkIndex = 0; parkIndex < transferring.size(); parkIndex++) {
+			ArrayList<Booking> toBeTransferred = transferring.get(parkIndex);
+			Park park = parks.get(parkIndex);
 			// deleting the booking from the active table and inserting it into the
-			// cancelled table
+			// cancelled table, the insertions are executed together in a batch
+			ArrayList<Communication> inserts = new ArrayList<>();
 
 			// sending cancellation notification to the relevant cancelled bookings
 			for (Booking transfer : toBeTransferred) {
@@ -622,7 +659,6 @@ public class BackgroundManager {
 					e.printStackTrace();
 				}
 
-				Park park = parks.get(parkIndex++);
 				String parkTableName = parkControl.nameOfTable(park) + insert.cancelledBookings;
 				insert.setTables(Arrays.asList(parkTableName));
 				insert.setColumnsAndValues(
@@ -635,22 +671,16 @@ public class BackgroundManager {
 								transfer.getNumberOfVisitors(), transfer.getIdNumber(), transfer.getFirstName(),
 								transfer.getLastName(), transfer.getEmailAddress(), transfer.getPhoneNumber(),
 								"Did not confirm"));
-
-				// executing insert query
-				database.executeInsertQuery(insert);
+				inserts.add(insert);
 			}
 
-			// creating the IN (...) part to the delete query, to delete all the relevant
-			// bookings from the active table
+			// executing the insert queries, the bookings are deleted from the active table
+			// only if they were inserted to the cancelled table
+			boolean isInserted = database.executeBatch(inserts);
+
+			// the booking ids are bound as the values of the IN list of the delete query,
+			// to delete all the relevant bookings from the active table
 			int size = bookingIDs.size();
-			String value = "(";
-			// creating the booking ids values
-			for (int i = 0; i < size; i++) {
-				value += "'" + bookingIDs.get(i) + "'";
-				if (i + 1 < size)
-					value += ", ";
-			}
-			value += ")";
 
 			// creating the delete request
 			Communication delete = new Communication(CommunicationType.SELF);
@@ -659,13 +689,13 @@ public class BackgroundManager {
 			} catch (CommunicationException e) {
 				e.printStackTrace();
 			}
-			Park park = parks.get(transferring.indexOf(toBeTransferred));
 			String parkTableName = parkControl.nameOfTable(park) + delete.activeBookings;
 			delete.setTables(Arrays.asList(parkTableName));
-			delete.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("IN"), Arrays.asList(value));
+			delete.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("IN"),
+					Arrays.asList(bookingIDs));
 
 			// executing the query if there are bookings to remove
-			if (size > 0) {
+			if (size > 0 && isInserted) {
 				database.executeDeleteQuery(delete);
 			}
 
@@ -797,7 +827,16 @@ public class BackgroundManager {
 		int decreasePriority = 0;
 		for (Booking currentBooking : waitingResults) {
 			int currentBookingSize = currentBooking.getNumberOfVisitors();
-			if (currentBookingSize <= moreCanEnter) {
+			// the place is also reserved in the occupancy timeline, since bookings are
+			// inserted at the same time without the park's semaphore. A booking which
+			// can't get a place there, or which is already counted as active, stays in
+			// the waiting list
+			int reservation = currentBookingSize > moreCanEnter ? OccupancyTimeline.frameFull
+					: OccupancyTimeline.contended;
+			while (reservation == OccupancyTimeline.contended)
+				reservation = occupancy.reserve(parkId, currentBooking.getBookingId(), currentBooking.getDayOfVisit(),
+						currentBooking.getTimeOfVisit(), timeLimit, currentBookingSize, park.getMaximumOrders());
+			if (reservation == OccupancyTimeline.reserved || reservation == OccupancyTimeline.notCovered) {
 				moreCanEnter -= currentBookingSize;
 				decreasePriority++;
 				transferBookings.add(currentBooking);
@@ -813,7 +852,10 @@ public class BackgroundManager {
 		// holds all the bookings that need to be released from the waiting list.
 
 		// first: removing all released waiting list bookings from the waiting list
-		// table and inserting them to the active bookings table
+		// table and inserting them to the active bookings table. each kind of query is
+		// executed together in a batch
+		ArrayList<Communication> deletes = new ArrayList<>();
+		ArrayList<Communication> inserts = new ArrayList<>();
 		for (Booking transfer : transferBookings) {
 			// deleting
 			Communication delete = new Communication(CommunicationType.SELF);
@@ -825,8 +867,7 @@ public class BackgroundManager {
 			delete.setTables(Arrays.asList(parkTableName));
 			delete.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("="),
 					Arrays.asList(transfer.getBookingId()));
-
-			database.executeDeleteQuery(delete);
+			deletes.add(delete);
 
 			// inserting
 			Communication insert = new Communication(CommunicationType.SELF);
@@ -860,12 +901,13 @@ public class BackgroundManager {
 							transfer.isConfirmed() == false ? 0 : 1, transfer.getEntryParkTime(),
 							transfer.getExitParkTime(), transfer.isRecievedReminder() == false ? 0 : 1,
 							transfer.getReminderArrivalTime()));
-
-			database.executeInsertQuery(insert);
+			inserts.add(insert);
 		}
+		boolean isDeleted = database.executeBatch(deletes);
+		boolean isInserted = database.executeBatch(inserts);
 
 		// second: updating all remaining waiting list bookings' priorities
-
+		ArrayList<Communication> updates = new ArrayList<>();
 		for (Booking updatePriority : waitingResults) {
 			Communication update = new Communication(CommunicationType.SELF);
 			try {
@@ -878,21 +920,14 @@ public class BackgroundManager {
 					Arrays.asList(updatePriority.getWaitingListPriority()));
 			update.setWhereConditions(Arrays.asList("bookingId"), Arrays.asList("="),
 					Arrays.asList(updatePriority.getBookingId()));
-
-			database.executeUpdateQuery(update);
+			updates.add(update);
 		}
+		boolean isUpdated = database.executeBatch(updates);
 
-		// commiting all the waiting queries
-		try {
-			database.commit();
-		} catch (SQLException e) {
-			try {
-				// if a problem occures, rolling back all queries
-				database.rollback();
-			} catch (SQLException e1) {
-				e1.printStackTrace();
-			}
-		}
+		// commiting all the waiting queries, or rolling them back if one of the
+		// batches failed, so a released booking is never deleted from the waiting list
+		// without being inserted to the active table
+		boolean isCommitted = endTransaction(isDeleted && isInserted && isUpdated);
 		try {
 			// toggeling auto commit to allow other transactions
 			database.toggleAutoCommit(true);
@@ -901,10 +936,25 @@ public class BackgroundManager {
 
 		}
 
+		// counting the inserted bookings in the occupancy timeline, or releasing their
+		// reservations if they were not inserted
+		for (Communication insert : inserts) {
+			if (isCommitted) {
+				occupancy.applyUpdate(insert);
+				occupancy.confirm(insert);
+			} else {
+				occupancy.release(insert);
+			}
+		}
+
 		//////////////////
 		/// THIRD PART ///
 		//////////////////
 
+		// if the transfer was rolled back, nothing has changed, so no one is notified
+		if (!isCommitted)
+			return;
+
 		// sending confirmation to the transferred bookings
 		for (Booking transfer : transferBookings) {
 			notifications.sendWaitingListEmailNotification(
@@ -914,6 +964,126 @@ public class BackgroundManager {
 							transfer.getParkBooked().getParkCity() + ", " + transfer.getParkBooked().getParkState(),
 							transfer.getNumberOfVisitors(), transfer.getFinalPrice(), transfer.isPaid()));
 		}
+
+		// pushing the new status of the released bookings, and the new priority of the
+		// bookings staying in the waiting list, to the clients watching them
+		for (Booking transfer : transferBookings)
+			push.publish(Communication.bookingStatusTopic(transfer.getBookingId()), transfer.getBookingId(),
+					Communication.bookingReleased, 0);
+		for (Booking waiting : waitingResults)
+			push.publish(Communication.bookingStatusTopic(waiting.getBookingId()), waiting.getBookingId(),
+					Communication.bookingWaiting, waiting.getWaitingListPriority());
+	}
+
+	/**
+	 * This method is called from the server side after a client requested all the
+	 * available slots of a park in a date range. The active bookings of the whole
+	 * range and the park's parameters are selected in parallel, and each slot is
+	 * checked against the bookings in memory instead of sending a query per slot.
+	 * The bookings are not selected if the occupancy timeline covers the range.
+	 *
+	 * @param request the availability request, holding the park, the range, the
+	 *                hours and the number of visitors, and the selection of the
+	 *                dayOfVisit, timeOfVisit and summed numberOfVisitors of the
+	 *                park's booked slots in the range
+	 * @param timeout the timeout of the selections, in milliseconds
+	 * @return a future completed with a list of {date, time} rows of all the
+	 *         available slots, or with null if a selection failed
+	 */
+	public CompletableFuture<ArrayList<Object[]>> getAvailableSlots(Communication request, long timeout) {
+		boolean useTimeline = occupancy.covers(request.getParkId(), request.getDayOfVisit(),
+				request.getLastDayOfRange());
+		CompletableFuture<ArrayList<Object[]>> bookings = useTimeline
+				? CompletableFuture.completedFuture(new ArrayList<>())
+				: database.async().executeSelectQuery(request, timeout);
+
+		// getting the updated orders amount and time limit parameters of the park
+		Communication parametersRequest = new Communication(CommunicationType.SELF);
+		try {
+			parametersRequest.setQueryType(QueryType.SELECT);
+		} catch (CommunicationException e) {
+			e.printStackTrace();
+		}
+		parametersRequest.setTables(Arrays.asList(Communication.park));
+		parametersRequest.setSelectColumns(Arrays.asList("maximumOrderAmount", "maximumTimeLimit"));
+		parametersRequest.setWhereConditions(Arrays.asList("parkId"), Arrays.asList("="),
+				Arrays.asList(request.getParkId()));
+		CompletableFuture<ArrayList<Object[]>> parameters = database.async().executeSelectQuery(parametersRequest,
+				timeout);
+		// a selection which failed cancels the other one, instead of waiting for it
+		bookings.whenComplete((result, e) -> {
+			if (e != null)
+				parameters.cancel(false);
+		});
+		parameters.whenComplete((result, e) -> {
+			if (e != null)
+				bookings.cancel(false);
+		});
+
+		return bookings.thenCombine(parameters, (bookingsResult, parametersResult) -> {
+			if (bookingsResult == null || parametersResult == null)
+				return null;
+			if (parametersResult.isEmpty())
+				return new ArrayList<Object[]>();
+			return getAvailableSlots(request, bookingsResult, useTimeline, (Integer) parametersResult.get(0)[0],
+					(Integer) parametersResult.get(0)[1]);
+		}).exceptionally(e -> {
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+					+ ": available slots check failed");
+			return null;
+		});
+	}
+
+	/**
+	 * This method checks every slot of the requested range against the park's
+	 * bookings, or against the occupancy timeline
+	 *
+	 * @param request       the availability request
+	 * @param bookings      the dayOfVisit, timeOfVisit and summed numberOfVisitors
+	 *                      of the park's booked slots in the range
+	 * @param useTimeline   true if the occupancy timeline covers the range
+	 * @param maximumOrders the park's maximum orders amount
+	 * @param timeLimit     the park's maximum time limit
+	 * @return a list of {date, time} rows of all the available slots
+	 */
+	private ArrayList<Object[]> getAvailableSlots(Communication request, ArrayList<Object[]> bookings,
+			boolean useTimeline, int maximumOrders, int timeLimit) {
+		ArrayList<Object[]> available = new ArrayList<>();
+
+		// grouping the bookings by their day of visit
+		HashMap<LocalDate, ArrayList<Object[]>> bookingsByDay = new HashMap<>();
+		for (Object[] row : bookings) {
+			LocalDate day = ((Date) row[0]).toLocalDate();
+			bookingsByDay.computeIfAbsent(day, key -> new ArrayList<>())
+					.add(new Object[] { ((Time) row[1]).toLocalTime(), row[2] });
+		}
+
+		int gap = request.getMinutesGap();
+		for (LocalDate day = request.getDayOfVisit(); day
+				.compareTo(request.getLastDayOfRange()) <= 0; day = day.plusDays(1)) {
+			ArrayList<Object[]> dayBookings = bookingsByDay.getOrDefault(day, new ArrayList<>());
+			for (int hour = request.getOpenHour(); hour <= request.getCloseHour(); hour++) {
+				for (int minute = 0; minute < 60; minute += gap == 0 ? 60 : gap) {
+					LocalTime time = LocalTime.of(hour, minute);
+					LocalTime from = time.minusHours(timeLimit), to = time.plusHours(timeLimit);
+					// counting the visitors of the bookings in the slot's time frame
+					int countVisitors = 0;
+					if (useTimeline) {
+						countVisitors = occupancy.countVisitors(request.getParkId(), day, from, to);
+					} else {
+						for (Object[] booking : dayBookings) {
+							LocalTime bookingTime = (LocalTime) booking[0];
+							if (bookingTime.compareTo(from) > 0 && bookingTime.compareTo(to) < 0)
+								countVisitors += ((Number) booking[1]).intValue();
+						}
+					}
+					if (maximumOrders - countVisitors - request.getNumberOfVisitors() >= 0)
+						available.add(new Object[] { day, time });
+				}
+			}
+		}
+		return available;
 	}
 
 	/**
@@ -928,6 +1098,13 @@ public class BackgroundManager {
 	 */
 	@SuppressWarnings("static-access")
 	private int getCurrentParkCapacities(Park park, LocalDate date, LocalTime time, int timeLimit) {
+		// checking the occupancy timeline first, the database is queried only if the
+		// date is out of the timeline's range
+		int countFromTimeline = occupancy.countVisitors(park.getParkId(), date, time.minusHours(timeLimit),
+				time.plusHours(timeLimit));
+		if (countFromTimeline != -1)
+			return countFromTimeline;
+
 		// creating the request for the availability check
 		Communication availabilityRequest = new Communication(CommunicationType.SELF);
 		try {
@@ -939,7 +1116,7 @@ public class BackgroundManager {
 		String parkTableName = parkControl.nameOfTable(park) + availabilityRequest.activeBookings;
 
 		availabilityRequest.setTables(Arrays.asList(parkTableName));
-		availabilityRequest.setSelectColumns(Arrays.asList("numberOfVisitors"));
+		availabilityRequest.setAggregates(Arrays.asList(AggregateFunction.SUM), Arrays.asList("numberOfVisitors"));
 		availabilityRequest.setWhereConditions(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"),
 				Arrays.asList("=", "AND", ">", "AND", "<"),
 				Arrays.asList(date, time.minusHours(timeLimit), time.plusHours(timeLimit)));
@@ -950,12 +1127,37 @@ public class BackgroundManager {
 		int countVisitors = 0;
 		// checking the orders amount for the specific time
 		for (Object[] row : results) {
-			countVisitors += (Integer) row[0];
+			countVisitors += ((Number) row[0]).intValue();
 		}
 
 		return countVisitors;
 	}
 
+	/**
+	 * This method ends the transaction of a background operation: it is committed
+	 * if all its queries succeeded, and rolled back otherwise
+	 *
+	 * @param isSucceed true if all the queries of the transaction succeeded
+	 * @return true if the transaction was committed
+	 */
+	private boolean endTransaction(boolean isSucceed) {
+		try {
+			if (isSucceed) {
+				database.commit();
+				return true;
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		try {
+			// if a problem occures, rolling back all queries
+			database.rollback();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
 	/**
 	 * This method is called in order to insert parks details into the parks array
 	 * list property
@@ -4,6 +4,11 @@ import java.io.IOException;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 
 import common.communication.Communication;
@@ -12,7 +17,9 @@ import common.communication.Communication.CommunicationType;
 import common.communication.Communication.QueryType;
 import common.communication.Communication.SecondaryRequest;
 import common.communication.Communication.ServerMessageType;
+import common.communication.CommunicationCodec;
 import common.communication.CommunicationException;
+import common.communication.WireCompression;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import ocsf.server.AbstractServer;
@@ -24,12 +31,84 @@ import serverSide.jdbc.DatabaseException;
 public class GoNatureServer extends AbstractServer {
 	private DatabaseController database;
 	private BackgroundManager backgroundManager;
+	private OccupancyTimeline occupancy;
+	private UsersIndex users;
 	private ArrayList<ConnectionToClient> clientsConnected = new ArrayList<>();
 	public static final ObservableList<ConnectedClient> connectedToGUI = FXCollections.observableArrayList();
 	private NotificationsController notifications = NotificationsController.getInstance();
 	private StaffController staffController;
 	private static final int parkAmount = 18; // 17 parks and 1 more for other uses
 	private ArrayList<Semaphore> parksSemaphores = new ArrayList<>(); // for park capacities critical section control
+	private static final int batchThreads = 10; // the batch selections executed at the same time
+	// the requests are handled by worker threads, so the connection's thread goes
+	// straight back to reading. notifications are sent by their own workers, so a
+	// slow mail server never delays the queries. in the virtual threads mode, each
+	// request gets its own virtual thread instead
+	private static final int requestThreads = 10; // as the number of database connections
+	private static final int requestQueueSize = 200; // requests waiting for a free worker
+	private static final int notificationThreads = 2;
+	// in the platform threads mode, the requests are taken by the workers by the
+	// weights of their classes, so the gate operations are never queued behind the
+	// reports
+	private PriorityDispatcher dispatcher = ServerThreads.isVirtual() ? null
+			: new PriorityDispatcher("request", requestThreads, requestQueueSize);
+	// in the virtual threads mode, every request gets its own virtual thread
+	private ExecutorService requestExecutor = !ServerThreads.isVirtual() ? null
+			: ServerThreads.newRequestExecutor("request", requestThreads, requestQueueSize);
+	private ExecutorService notificationExecutor = ServerThreads.newRequestExecutor("notification",
+			notificationThreads, requestQueueSize);
+	private ExecutorService batchExecutor = ServerThreads.newTaskExecutor("batch", batchThreads, requestQueueSize);
+	// bounds the requests of every client and of the whole server, so a flooding
+	// client is answered with BUSY messages instead of delaying the other clients
+	private AdmissionControl admission = new AdmissionControl(requestQueueSize);
+	// the responses of the handled requests, for answering the requests a client
+	// sent again after a timeout without executing them twice
+	private static final int idempotencyCapacity = 10000;
+	private static final long idempotencyMinutes = 10;
+	private IdempotencyCache idempotency = new IdempotencyCache(idempotencyCapacity, idempotencyMinutes);
+	// the clients' messages are read and written by a few selector threads, instead
+	// of a thread for each connected client
+	private static final int selectorThreads = 2;
+	// the number of rows in each chunk of a streamed SELECT result
+	private static final int chunkRows = 500;
+	// the timeout of the selections executed in parallel for a request, shorter than
+	// the client's timeout before sending the request again
+	private static final long parallelQueryTimeout = 5000; // in milliseconds
+	// the key of the codec version agreed on with a client, in the client's info
+	private static final String codecVersionInfo = "codecVersion";
+	// large messages are compressed for the clients which agreed on it when
+	// connecting, the key of the agreement in the client's info
+	private static final String compressionInfo = "compression";
+	private WireCompression compression = new WireCompression();
+	// the clients' subscriptions to the server's events
+	private PushChannel push = new PushChannel();
+
+	/**
+	 * The classes of the requests, determining the workers handling them. The
+	 * weight of a class is its share of the request workers when requests of
+	 * several classes are waiting, a class of weight 0 is not handled by the
+	 * request workers
+	 * 
+	 * GATE: the park entrance and exit operations, latency critical
+	 * 
+	 * REPORT: the reports' queries, over the history tables
+	 */
+	public enum RequestClass {
+		GATE(8), TRANSACTION(4), QUERY(4), BATCH(1), REPORT(1), NOTIFICATION(0), CONTROL(0);
+
+		private final int weight;
+
+		private RequestClass(int weight) {
+			this.weight = weight;
+		}
+
+		/**
+		 * @return the share of the request workers of this class
+		 */
+		public int getWeight() {
+			return weight;
+		}
+	}
 
 	/**
 	 * The constructor creates a new server on the given port, and also creates an
@@ -39,6 +118,7 @@ public class GoNatureServer extends AbstractServer {
 	 */
 	public GoNatureServer(int port) {
 		super(port);
+		setSelectorThreads(selectorThreads);
 		initializeSemaphores();
 	}
 
@@ -60,7 +140,14 @@ public class GoNatureServer extends AbstractServer {
 	public void initiateBackgroundManager() {
 		if (database == null)
 			throw new NullPointerException();
-		backgroundManager = new BackgroundManager(database);
+		// building the parks' occupancy timeline before any request is handled
+		occupancy = new OccupancyTimeline(database);
+		occupancy.build();
+		// indexing the usernames, so a login is checked against the user's table only
+		users = new UsersIndex(database);
+		users.build();
+		backgroundManager = new BackgroundManager(database, occupancy, compression, push, admission, dispatcher,
+				idempotency);
 
 		// starting the background operations
 		backgroundManager.startBackgroundOperations();
@@ -164,6 +251,8 @@ public class GoNatureServer extends AbstractServer {
 	 * This method removes the sent client from the clientsConnected list.
 	 */
 	protected void clientDisconnected(ConnectionToClient client) {
+		push.removeClient(client);
+		admission.removeClient(client);
 		if (!isClientConnected(client)) {
 			System.out.println(client + " is not connected to server, can't establish disconnection");
 		} else {
@@ -180,6 +269,16 @@ public class GoNatureServer extends AbstractServer {
 		}
 	}
 
+	@Override
+	/**
+	 * This method unsubscribes a client whose connection failed from all of its
+	 * topics.
+	 */
+	protected void clientException(ConnectionToClient client, Throwable exception) {
+		push.removeClient(client);
+		admission.removeClient(client);
+	}
+
 	/**
 	 * @param client the ConnectionToClient that is checked
 	 * @return true if the client is currently connected, false if not.
@@ -204,7 +303,7 @@ public class GoNatureServer extends AbstractServer {
 	 */
 	public ImportStatus importUsersFromExternalSystem() {
 		if (staffController == null) {
-			staffController = new StaffController(database);
+			staffController = new StaffController(database, users);
 		}
 		// initiating the users import from the external system into the database
 		return staffController.importUsers();
@@ -220,36 +319,346 @@ public class GoNatureServer extends AbstractServer {
 		}
 	}
 
+	/**
+	 * @param request a request from the client side
+	 * @return the class of the request
+	 */
+	private RequestClass classify(Communication request) {
+		switch (request.getCommunicationType()) {
+		case TRANSACTION:
+			for (Communication query : request.getRequestsList())
+				if (isGateRequest(query))
+					return RequestClass.GATE;
+			return RequestClass.TRANSACTION;
+		case BATCH:
+			return RequestClass.BATCH;
+		case NOTIFICATION:
+			return RequestClass.NOTIFICATION;
+		case QUERY_REQUEST:
+			if (isGateRequest(request))
+				return RequestClass.GATE;
+			if (isReportRequest(request))
+				return RequestClass.REPORT;
+			return RequestClass.QUERY;
+		default:
+			return RequestClass.CONTROL;
+		}
+	}
+
+	/**
+	 * @param request a query request
+	 * @return true if the request is a park entrance or exit operation: a capacity
+	 *         update, a booking lock, or an update of the park's active bookings
+	 */
+	private boolean isGateRequest(Communication request) {
+		if (request.getSecondaryRequest() == SecondaryRequest.UPDATE_CAPACITY)
+			return true;
+		if (request.getTables() == null)
+			return false;
+		for (String table : request.getTables())
+			if (table.equals(Communication.bookingLock)
+					|| table.endsWith(Communication.activeBookings) && request.getQueryType() != QueryType.SELECT)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @param request a query request
+	 * @return true if the request is a report's query: a streamed SELECT, or a
+	 *         SELECT over the reports or the bookings' history tables
+	 */
+	private boolean isReportRequest(Communication request) {
+		if (request.getQueryType() != QueryType.SELECT)
+			return false;
+		if (request.isStreamed())
+			return true;
+		if (request.getTables() == null)
+			return false;
+		for (String table : request.getTables())
+			if (table.equals(Communication.totalReport) || table.equals(Communication.usageReport)
+					|| table.endsWith(Communication.doneBookings) || table.endsWith(Communication.cancelledBookings))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Encodes the Communication with the codec, and compresses it if it's large, as
+	 * the client agreed on when connecting
+	 */
+	@Override
+	protected byte[] serializeMessage(Object msg, ConnectionToClient client) throws IOException {
+		if (!(msg instanceof Communication))
+			return super.serializeMessage(msg, client);
+		Object version = client.getInfo(codecVersionInfo);
+		byte[] frame = version != null && (Integer) version > 0 ? CommunicationCodec.encode((Communication) msg)
+				: super.serializeMessage(msg, client);
+		return Boolean.TRUE.equals(client.getInfo(compressionInfo)) ? compression.compress(frame) : frame;
+	}
+
+	/**
+	 * Decodes a message encoded by the codec, or deserializes it otherwise. A
+	 * compressed message is decompressed first
+	 */
+	@Override
+	protected Object deserializeMessage(byte[] frame, ConnectionToClient client)
+			throws IOException, ClassNotFoundException {
+		if (WireCompression.isCompressed(frame))
+			frame = WireCompression.decompress(frame);
+		if (CommunicationCodec.isEncoded(frame))
+			return CommunicationCodec.decode(frame);
+		return super.deserializeMessage(frame, client);
+	}
+
 	@Override
 	/**
-	 * This method gets a message from client-side and handles it
+	 * This method gets a message from client-side and hands it to the workers
+	 * handling its class of requests. A request over the client's or the server's
+	 * limit of requests is answered with a BUSY message, and a request the client
+	 * sent again is answered with the response of the earlier one
 	 * 
 	 * @param msg    the Communication object
 	 * @param client the ConnectionToClient who sent this request
 	 */
 	protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+		Communication request = (Communication) msg;
+		RequestClass requestClass = classify(request);
+
 		// announcing the request from the client side has arrived
 		System.out.println(
 				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
-						+ ": Communication recieved from client " + client.toString());
+						+ ": Communication recieved from client " + client.toString() + " (" + requestClass + ")");
 
-		Communication request = (Communication) msg;
-		Communication response; // will be sent over to the client side
+		// connections, subscriptions and disconnections are handled right away, by
+		// their order
+		if (requestClass == RequestClass.CONTROL) {
+			handleRequest(request, client);
+			return;
+		}
 
+		// a streamed selection is answered by several responses, and is not tracked
+		if (!request.isStreamed()) {
+			CompletableFuture<Communication> earlier = idempotency.begin(request.getUniqueId(),
+					isResponseKept(request));
+			if (earlier != null) { // a duplicate of a handled request, or of a request being handled
+				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+						LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+						+ " was already received, answering with its response");
+				earlier.thenAccept(response -> {
+					if (response == null) // the earlier request had no response
+						return;
+					try {
+						client.sendToClient(response);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				});
+				return;
+			}
+		}
+
+		if (!admission.admit(client)) {
+			idempotency.end(request.getUniqueId(), false);
+			sendBusy(request, client);
+			return;
+		}
+		Runnable task = () -> {
+			try {
+				handleRequest(request, client);
+			} finally {
+				idempotency.end(request.getUniqueId(), true);
+				admission.release(client);
+			}
+		};
+		try {
+			if (requestClass == RequestClass.NOTIFICATION)
+				notificationExecutor.execute(task);
+			else if (dispatcher != null)
+				dispatcher.execute(requestClass, task);
+			else // every request gets its own virtual thread
+				requestExecutor.execute(task);
+		} catch (RejectedExecutionException e) { // the workers' queue is full
+			idempotency.end(request.getUniqueId(), false);
+			admission.release(client);
+			sendBusy(request, client);
+		}
+	}
+
+	/**
+	 * @param request a request from the client side
+	 * @return true if the request's response should be kept for its duplicates,
+	 *         false if the request is a plain selection, which can be executed
+	 *         again
+	 */
+	private boolean isResponseKept(Communication request) {
+		if (request.getCommunicationType() == CommunicationType.BATCH) // selections only
+			return false;
+		return request.getCommunicationType() != CommunicationType.QUERY_REQUEST
+				|| request.getQueryType() != QueryType.SELECT || request.getSecondaryRequest() != null;
+	}
+
+	/**
+	 * This method sends the response of a request to the client side, and keeps
+	 * it for the duplicates of the request
+	 * 
+	 * @param request  the request
+	 * @param response the response to the request
+	 * @param client   the ConnectionToClient who sent this request
+	 */
+	private void respond(Communication request, Communication response, ConnectionToClient client) {
+		idempotency.setResponse(request.getUniqueId(), response);
+		try {
+			client.sendToClient(response);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * This method answers a rejected request with a BUSY message, so the client
+	 * can send it again later
+	 * 
+	 * @param request the rejected request
+	 * @param client  the ConnectionToClient who sent this request
+	 */
+	private void sendBusy(Communication request, ConnectionToClient client) {
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Server is busy, rejected Communication Request no. " + request.getUniqueId()
+						+ " of client " + client.toString() + " (" + admission.getQueueDepth()
+						+ " requests waiting)");
+		Communication busy = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+		busy.setServerMessageType(ServerMessageType.BUSY);
+		busy.setUniqueId(request.getUniqueId());
+		try {
+			client.sendToClient(busy);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * This method handles a request from the client side, inside the critical
+	 * section of its park if it requires one. The critical section is always
+	 * released, and if the request failed unexpectedly, a failure response is sent
+	 * to the client side.
+	 * 
+	 * @param request the Communication object
+	 * @param client  the ConnectionToClient who sent this request
+	 */
+	private void handleRequest(Communication request, ConnectionToClient client) {
 		// first checking if the request requires a critical section for this specific
 		// park.
 		// if so: acquires the semaphore, or waiting for it to be released if already
 		// acquired
 		int isRequestCritical = request.isCritical(); // returns -1 if not requires a critical section
+		// capacity checks and booking insertions of dates held by the occupancy
+		// timeline are reserved with its atomic counters, without the park's semaphore
+		if (isRequestCritical != -1 && occupancy.isLockFree(request))
+			isRequestCritical = -1;
+		boolean isAcquired = false;
 		if (isRequestCritical != -1) { // acquiring the critical section
 			try {
 				parksSemaphores.get(isRequestCritical).acquire();
+				isAcquired = true;
 				System.out.println("Semaphore is aquired for park #" + isRequestCritical);
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
 		}
 
+		try {
+			executeRequest(request, client, isRequestCritical);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			if (request.getCommunicationType() != CommunicationType.NOTIFICATION
+					&& request.getCommunicationType() != CommunicationType.CLIENT_SERVER_MESSAGE) {
+				Communication response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+				response.setServerMessageType(ServerMessageType.RESPONSE);
+				response.setUniqueId(request.getUniqueId());
+				response.setQueryResult(false);
+				respond(request, response, client);
+			}
+		} finally {
+			if (isAcquired) { // releaseing the critical section of the park
+				parksSemaphores.get(isRequestCritical).release();
+				System.out.println("Semaphore is released for park #" + isRequestCritical);
+			}
+		}
+	}
+
+	/**
+	 * This method pushes the parameters of a park after they were updated, for
+	 * example after the department manager approved their adjustment. Only updates
+	 * of a single park, by its id, are pushed
+	 * 
+	 * @param request an executed UPDATE request
+	 */
+	private void publishParkParameters(Communication request) {
+		if (request.getTables() == null || !request.getTables().equals(Arrays.asList(Communication.park))
+				|| request.getWhereColumns() == null || !request.getWhereColumns().equals(Arrays.asList("parkId")))
+			return;
+		ArrayList<Object[]> parameters = new ArrayList<>();
+		for (int i = 0; i < request.getColumns().size(); i++)
+			parameters.add(new Object[] { request.getColumns().get(i), request.getValues().get(i) });
+		push.publish(Communication.parkParametersTopic(Integer.parseInt(request.getWhereValues().get(0).toString())),
+				parameters);
+	}
+
+	/**
+	 * This method executes a streamed SELECT query, and sends every chunk of rows
+	 * to the client as soon as it is read. All the chunks are sent under the unique
+	 * id of the request, numbered by their order, and the last one holds the
+	 * remaining rows and the query result.
+	 * 
+	 * @param request the SELECT request
+	 * @param client  the ConnectionToClient who sent this request
+	 */
+	private void streamSelectQuery(Communication request, ConnectionToClient client) {
+		int[] chunks = { 0 };
+		ArrayList<Object[]> lastChunk = database.executeSelectQuery(request, chunkRows, chunk -> {
+			Communication response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+			response.setServerMessageType(ServerMessageType.RESPONSE);
+			response.setUniqueId(request.getUniqueId());
+			response.setStreamed(true);
+			response.setChunk(chunks[0]++, false);
+			response.setResultList(chunk);
+			response.setQueryResult(true);
+			// the sending waits while the chunks queued for the client are too long, so the
+			// rows are read at the client's pace instead of being queued in memory
+			try {
+				client.sendToClient(response);
+				return true;
+			} catch (IOException e) { // the client is gone or stuck, no need to read more rows
+				e.printStackTrace();
+				return false;
+			}
+		});
+
+		Communication response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+		response.setServerMessageType(ServerMessageType.RESPONSE);
+		response.setUniqueId(request.getUniqueId());
+		response.setStreamed(true);
+		response.setChunk(chunks[0], true);
+		response.setResultList(lastChunk == null ? new ArrayList<>() : lastChunk);
+		response.setQueryResult(lastChunk != null);
+		try {
+			client.sendToClient(response);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * This method executes a request from the client side and sends the response
+	 * 
+	 * @param request           the Communication object
+	 * @param client            the ConnectionToClient who sent this request
+	 * @param isRequestCritical the index of the park's semaphore held for this
+	 *                          request, -1 if no semaphore is held
+	 */
+	private void executeRequest(Communication request, ConnectionToClient client, int isRequestCritical) {
+		Communication response; // will be sent over to the client side
+
 		// getting the communication type
 		CommunicationType type = request.getCommunicationType();
 
@@ -269,21 +678,63 @@ public class GoNatureServer extends AbstractServer {
 			// checking which type of query is requested
 			switch (request.getQueryType()) {
 			case SELECT:
-				ArrayList<Object[]> resultList = database.executeSelectQuery(request);
+				// a streamed result is sent in chunks while it is read, by its own responses
+				if (request.isStreamed() && request.getSecondaryRequest() == null) {
+					streamSelectQuery(request, client);
+					return;
+				}
+				ArrayList<Object[]> resultList = null;
+				// time frame capacity checks are answered from the parks' occupancy timeline
+				// and sent to the database only if the timeline can't answer them
+				if (request.getSecondaryRequest() == SecondaryRequest.COUNT_VISITORS_IN_TIME_FRAME
+						|| request.getSecondaryRequest() == SecondaryRequest.INSERT_BOOKING_AFTER_CHECKING_CAPACITIES) {
+					resultList = occupancy.answerTimeFrameSelect(request);
+				} else if (request.getSecondaryRequest() == SecondaryRequest.AVAILABLE_SLOTS) {
+					// the park's bookings and parameters are selected in parallel, and the slots
+					// are checked after both arrived
+					resultList = backgroundManager.getAvailableSlots(request, parallelQueryTimeout).join();
+					if (resultList != null)
+						response.setResultList(resultList);
+					response.setQueryResult(resultList != null);
+					break;
+				} else if (request.getSecondaryRequest() == SecondaryRequest.AUTHENTICATE) {
+					// the credentials are checked in the user's table only, which is sent back
+					resultList = users.authenticate(request);
+					response.setTables(request.getTables() == null ? new ArrayList<>() : request.getTables());
+					if (resultList != null)
+						response.setResultList(resultList);
+					response.setQueryResult(resultList != null);
+					break;
+				}
+				if (resultList == null)
+					resultList = database.executeSelectQuery(request);
 				if (resultList != null)
 					response.setResultList(resultList);
 				response.setQueryResult(true);
 				break;
 			case UPDATE:
 				boolean updateQueryResult = database.executeUpdateQuery(request);
+				if (updateQueryResult) {
+					occupancy.applyUpdate(request);
+					users.applyUpdate(request);
+					publishParkParameters(request);
+				}
 				response.setQueryResult(updateQueryResult);
 				break;
 			case INSERT:
 				boolean insertQueryResult = database.executeInsertQuery(request);
+				if (insertQueryResult) {
+					occupancy.applyUpdate(request);
+					users.applyInsert(request);
+				}
 				response.setQueryResult(insertQueryResult);
 				break;
 			case DELETE:
 				boolean deleteQueryResult = database.executeDeleteQuery(request);
+				if (deleteQueryResult) {
+					occupancy.applyUpdate(request);
+					users.applyDelete(request);
+				}
 				response.setQueryResult(deleteQueryResult);
 				break;
 			default: // NONE
@@ -324,17 +775,19 @@ public class GoNatureServer extends AbstractServer {
 					break;
 				}
 				case UPDATE_CAPACITY: {
-					int visitorsBooking = request.getNumberOfVisitors();
-					int currentCapacity = (Integer) (response.getResultList().get(0)[0]);
+					// the capacity was already increased by the update, selecting the new capacity
+					// for pushing it to the subscribed clients
+					if (!response.getQueryResult())
+						break;
 					try {
-						request.setQueryType(QueryType.UPDATE);
+						request.setQueryType(QueryType.SELECT);
 					} catch (CommunicationException e) {
 						e.printStackTrace();
 					}
-					request.setColumnsAndValues(Arrays.asList("currentCapacity"),
-							Arrays.asList(currentCapacity + visitorsBooking));
-					boolean updateQueryResult = database.executeUpdateQuery(request);
-					response.setQueryResult(updateQueryResult);
+					request.setSelectColumns(Arrays.asList("currentCapacity", "parkId"));
+					ArrayList<Object[]> park = database.executeSelectQuery(request);
+					if (park != null && !park.isEmpty())
+						push.publish(Communication.parkOccupancyTopic((Integer) park.get(0)[1]), park.get(0)[0]);
 					break;
 				}
 				case INSERT_BOOKING_AFTER_CHECKING_CAPACITIES: {
@@ -346,30 +799,81 @@ public class GoNatureServer extends AbstractServer {
 						e.printStackTrace();
 					}
 
-					// if the returned value is null/empty, it means the selection returned no rows
-					// thus, the booking can be inserted to the active bookings table of the park
-					// as long as it does not exceed from the park limits
-					ArrayList<Object[]> result = response.getResultList();
-					if (result == null || result.isEmpty()) {
-						if (maximumCapacity >= bookingVisitors) { // inserting
-							boolean insertQueryResult = database.executeInsertQuery(request);
-							response.setQueryResult(insertQueryResult);
-						} else {
-							response.setQueryResult(false); // insertion is not possible
+					// reserving the place through the occupancy timeline, and confirming it after
+					// the insertion or releasing it if the insertion fails. The lock-free
+					// reservations are counted only by the timeline, so it decides whenever it
+					// covers the booking's date
+					int reservation = occupancy.reserve(request);
+					// if the reservation kept contending with others, or the park is not covered,
+					// the park's semaphore is acquired (unless it was acquired already)
+					int parkSemaphore = isRequestCritical == -1 && (reservation == OccupancyTimeline.contended
+							|| reservation == OccupancyTimeline.notCovered) ? request.isCritical() : -1;
+					if (parkSemaphore != -1) {
+						try {
+							parksSemaphores.get(parkSemaphore).acquire();
+						} catch (InterruptedException e) {
+							e.printStackTrace();
+							Thread.currentThread().interrupt();
+							response.setQueryResult(false);
+							break;
 						}
-					} else { // otherwise, checking the current orders capacity with the maximum
-						// calculating the current number of visitors
-						int sumOfVisitors = 0;
-						for (Object[] row : result) {
-							sumOfVisitors += (Integer) row[0];
+					}
+					try {
+						// the other semaphore holders are waiting, so the reservation contends only
+						// with the lock-free ones, and is tried again until the timeline decides
+						while (reservation == OccupancyTimeline.contended)
+							reservation = occupancy.reserve(request);
+						if (reservation == OccupancyTimeline.alreadyReserved) { // a resent booking
+							response.setQueryResult(true);
+							break;
+						}
+						if (reservation != OccupancyTimeline.notCovered) {
+							boolean insertQueryResult = reservation == OccupancyTimeline.reserved
+									&& database.executeInsertQuery(request);
+							if (insertQueryResult)
+								occupancy.confirm(request);
+							else if (reservation == OccupancyTimeline.reserved)
+								occupancy.release(request);
+							response.setQueryResult(insertQueryResult);
+							break;
 						}
 
+						// the park is not covered by the timeline, so the time frame is counted by
+						// the database. If the semaphore was acquired here, the time frame was
+						// selected before it, so it's selected again
+						ArrayList<Object[]> result = response.getResultList();
+						if (parkSemaphore != -1) {
+							try {
+								request.setQueryType(QueryType.SELECT);
+								result = database.executeSelectQuery(request);
+								request.setQueryType(QueryType.INSERT);
+							} catch (CommunicationException e) {
+								e.printStackTrace();
+							}
+							if (result == null) {
+								response.setQueryResult(false);
+								break;
+							}
+						}
+						// if the returned value is null/empty, it means the selection returned no rows
+						// thus, the booking can be inserted to the active bookings table of the park
+						// as long as it does not exceed from the park limits
+						int sumOfVisitors = 0;
+						if (result != null)
+							for (Object[] row : result)
+								if (row[0] != null)
+									sumOfVisitors += ((Number) row[0]).intValue();
 						if (maximumCapacity - sumOfVisitors - bookingVisitors >= 0) { // inserting
 							boolean insertQueryResult = database.executeInsertQuery(request);
+							if (insertQueryResult)
+								occupancy.applyUpdate(request);
 							response.setQueryResult(insertQueryResult);
 						} else { // insertion is not possible
 							response.setQueryResult(false);
 						}
+					} finally {
+						if (parkSemaphore != -1)
+							parksSemaphores.get(parkSemaphore).release();
 					}
 					break;
 				}
@@ -406,15 +910,20 @@ public class GoNatureServer extends AbstractServer {
 					} catch (CommunicationException e) {
 						e.printStackTrace();
 					}
+					break;
+				}
+				case COUNT_VISITORS_IN_TIME_FRAME: {
+					// the visitors were already counted by the selection above
+					break;
+				}
+				case AVAILABLE_SLOTS: {
+					// the available slots were already found by the selections above
+					break;
 				}
 				}
 			}
 			// sending the response to the client side
-			try {
-				client.sendToClient(response);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			respond(request, response, client);
 
 			break;
 		}
@@ -427,6 +936,41 @@ public class GoNatureServer extends AbstractServer {
 			if (request.getClientMessageType() == ClientMessageType.DISCONNECT) {
 				clientDisconnected(client);
 			}
+			// subscribing the client to the server's events of the topic
+			if (request.getClientMessageType() == ClientMessageType.SUBSCRIBE
+					|| request.getClientMessageType() == ClientMessageType.UNSUBSCRIBE) {
+				if (request.getClientMessageType() == ClientMessageType.SUBSCRIBE)
+					push.subscribe(request.getTopic(), client);
+				else
+					push.unsubscribe(request.getTopic(), client);
+				response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+				response.setServerMessageType(ServerMessageType.RESPONSE);
+				response.setUniqueId(request.getUniqueId());
+				response.setQueryResult(request.getTopic() != null);
+				try {
+					client.sendToClient(response);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			// agreeing on the codec and the compression the client offered, the response
+			// is already encoded with them
+			if (request.getClientMessageType() == ClientMessageType.CONNECT) {
+				int version = Math.min(request.getProtocolVersion(), CommunicationCodec.version);
+				client.setInfo(codecVersionInfo, version);
+				client.setInfo(compressionInfo, request.isCompressionEnabled());
+				response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+				response.setServerMessageType(ServerMessageType.RESPONSE);
+				response.setUniqueId(request.getUniqueId());
+				response.setProtocolVersion(version);
+				response.setCompressionEnabled(request.isCompressionEnabled());
+				response.setQueryResult(true);
+				try {
+					client.sendToClient(response);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
 			break;
 		}
 
@@ -439,14 +983,55 @@ public class GoNatureServer extends AbstractServer {
 			response.setServerMessageType(ServerMessageType.RESPONSE);
 			response.setUniqueId(request.getUniqueId());
 			boolean transactionResult = database.executeTransaction(request);
+			if (transactionResult) {
+				for (Communication executed : request.getRequestsList()) {
+					occupancy.applyUpdate(executed);
+					users.apply(executed);
+				}
+			}
 			response.setQueryResult(transactionResult);
 
 			// sending the response to the client side
-			try {
-				client.sendToClient(response);
-			} catch (IOException e) {
-				e.printStackTrace();
+			respond(request, response, client);
+			break;
+		}
+
+		/////////////
+		/// BATCH ///
+		/////////////
+		case BATCH: // if this is a batch of independent selection requests
+		{
+			response = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+			response.setServerMessageType(ServerMessageType.RESPONSE);
+			response.setUniqueId(request.getUniqueId());
+
+			// executing all the selections concurrently, each on its own database
+			// connection. only SELECT requests are executed in a batch
+			ArrayList<Future<ArrayList<Object[]>>> selections = new ArrayList<>();
+			for (Communication select : request.getRequestsList()) {
+				selections.add(batchExecutor.submit(
+						() -> select.getQueryType() == QueryType.SELECT ? database.executeSelectQuery(select) : null));
+			}
+
+			// collecting the result lists, by the order of the requests
+			ArrayList<ArrayList<Object[]>> batchResults = new ArrayList<>();
+			boolean batchResult = true;
+			for (Future<ArrayList<Object[]>> selection : selections) {
+				ArrayList<Object[]> resultList = null;
+				try {
+					resultList = selection.get();
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+				}
+				if (resultList == null)
+					batchResult = false;
+				batchResults.add(resultList);
 			}
+			response.setBatchResults(batchResults);
+			response.setQueryResult(batchResult);
+
+			// sending the response to the client side
+			respond(request, response, client);
 			break;
 		}
 
@@ -493,10 +1078,19 @@ public class GoNatureServer extends AbstractServer {
 		default: // server-client or self communciations are not handled here
 			return;
 		}
+	}
 
-		if (isRequestCritical != -1) { // releaseing the critical section of the park
-			parksSemaphores.get(isRequestCritical).release();
-			System.out.println("Semaphore is released for park #" + isRequestCritical);
-		}
+	@Override
+	/**
+	 * This method is called when the server is closed, and stops the workers
+	 * after they finish the requests they already got
+	 */
+	protected void serverClosed() {
+		if (dispatcher != null)
+			dispatcher.shutdown();
+		if (requestExecutor != null)
+			requestExecutor.shutdown();
+		notificationExecutor.shutdown();
+		batchExecutor.shutdown();
 	}
 }
\ No newline at end of file
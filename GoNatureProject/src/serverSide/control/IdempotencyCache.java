@@ -0,0 +1,147 @@
+package serverSide.control;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import common.communication.Communication;
+
+/**
+ * This class makes the handling of the clients' requests idempotent, by their
+ * unique ids. A client which did not get a response in time sends the same
+ * request again, with the same unique id, and a request already handled must
+ * not be executed twice, such as a booking insertion. The responses of the
+ * handled requests are kept for a limited time, up to a limited number of
+ * requests, and a duplicate request is answered with the kept response. A
+ * duplicate of a request still being handled is answered with its response once
+ * it's ready. The responses of plain selections are not kept, since executing
+ * them again changes nothing.
+ */
+public class IdempotencyCache {
+	// a handled request, or a request being handled
+	private static class Entry {
+		private final CompletableFuture<Communication> response = new CompletableFuture<>();
+		private final boolean isKept; // if false, removed after the response is sent
+		private final long createdAt = System.nanoTime();
+
+		private Entry(boolean isKept) {
+			this.isKept = isKept;
+		}
+	}
+
+	private final int capacity;
+	private final long expirationNanos;
+	// the entries by the order of their requests' arrival
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+	// statistics
+	private final AtomicLong replays = new AtomicLong();
+	private final AtomicLong joined = new AtomicLong(); // duplicates of requests being handled
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity          the maximum number of requests kept
+	 * @param expirationMinutes the time a response is kept
+	 */
+	public IdempotencyCache(int capacity, long expirationMinutes) {
+		this.capacity = capacity;
+		this.expirationNanos = TimeUnit.MINUTES.toNanos(expirationMinutes);
+	}
+
+	/**
+	 * This method is called when a request arrives, before it's handled
+	 *
+	 * @param uniqueId the unique id of the request
+	 * @param isKept   true if the response should be kept after it's sent, false
+	 *                 if only duplicates arriving while the request is handled are
+	 *                 answered with it
+	 * @return null if the request is new, and must be handled and ended by the
+	 *         caller. Otherwise, the future of the response of the earlier request
+	 *         with this unique id, completed with null if it had no response
+	 */
+	public synchronized CompletableFuture<Communication> begin(String uniqueId, boolean isKept) {
+		removeExpired();
+		Entry entry = entries.get(uniqueId);
+		if (entry != null) {
+			if (entry.response.isDone())
+				replays.incrementAndGet();
+			else
+				joined.incrementAndGet();
+			return entry.response;
+		}
+		entries.put(uniqueId, new Entry(isKept));
+		// the oldest entries are removed over the capacity, the requests still handled
+		// are removed too, so a late duplicate would be executed again
+		Iterator<Entry> oldest = entries.values().iterator();
+		while (entries.size() > capacity) {
+			Entry removed = oldest.next();
+			oldest.remove();
+			removed.response.complete(null);
+		}
+		return null;
+	}
+
+	/**
+	 * This method sets the response of a request, and sends it to the duplicates
+	 * waiting for it. The first response of a request is the one kept
+	 *
+	 * @param uniqueId the unique id of the request
+	 * @param response the response sent to the client
+	 */
+	public void setResponse(String uniqueId, Communication response) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(uniqueId);
+		}
+		if (entry != null)
+			entry.response.complete(response);
+	}
+
+	/**
+	 * This method is called after a request was handled. A request without a
+	 * response, or a rejected request, is ended with no response
+	 *
+	 * @param uniqueId  the unique id of the request
+	 * @param isHandled false if the request was rejected, so its entry is removed
+	 *                  and a duplicate is handled as a new request
+	 */
+	public void end(String uniqueId, boolean isHandled) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(uniqueId);
+			if (entry != null && (!isHandled || !entry.isKept))
+				entries.remove(uniqueId);
+		}
+		if (entry != null)
+			entry.response.complete(null);
+	}
+
+	/**
+	 * This method removes the expired entries, from the oldest. Must be called
+	 * while holding the lock
+	 */
+	private void removeExpired() {
+		long now = System.nanoTime();
+		Iterator<Map.Entry<String, Entry>> oldest = entries.entrySet().iterator();
+		while (oldest.hasNext()) {
+			Entry entry = oldest.next().getValue();
+			if (now - entry.createdAt < expirationNanos)
+				break;
+			if (entry.response.isDone()) // a request still handled is kept until it ends
+				oldest.remove();
+		}
+	}
+
+	/**
+	 * @return a summary of the cache statistics
+	 */
+	public synchronized String getStatistics() {
+		return "Idempotency cache: " + entries.size() + " of " + capacity + " requests kept, " + replays.get()
+				+ " duplicates answered with a kept response, " + joined.get()
+				+ " duplicates of requests being handled";
+	}
+}
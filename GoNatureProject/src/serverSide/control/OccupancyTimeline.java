@@ -0,0 +1,616 @@
+package serverSide.control;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import clientSide.control.ParkController;
+import common.communication.Communication;
+import common.communication.Communication.CommunicationType;
+import common.communication.Communication.QueryType;
+import common.communication.Communication.SecondaryRequest;
+import common.communication.CommunicationException;
+import common.entities.Park;
+import serverSide.jdbc.DatabaseController;
+
+/**
+ * This class holds an in-memory model of the parks' active bookings. Each park
+ * has atomic counters of the number of visitors booked at every minute and
+ * every hour of the future bookings range. This allows answering the "how many
+ * visitors are booked in this time frame" checks without querying the
+ * database, and reserving a place for a new booking without locking the whole
+ * park. The model is built from the active bookings tables and updated after
+ * every write to them.
+ */
+public class OccupancyTimeline {
+	private static final int minutesInDay = 24 * 60;
+	private static final int reserveAttempts = 8;
+	private static final long reserveBackoff = 50000; // in nanoseconds, doubled for every attempt
+
+	// the results of a reservation
+	public static final int reserved = 1;
+	public static final int frameFull = 0;
+	public static final int notCovered = -1; // the timeline can't answer, the database has to count
+	public static final int contended = -2; // kept contending with overlapping reservations
+	public static final int alreadyReserved = 2; // the booking is already counted, nothing was added
+	private DatabaseController database;
+	private ParkController parkControl = ParkController.getInstance();
+	/**
+	 * What is the future booking range, in months. Default: 4 months
+	 */
+	public int futureBookingsRange = 4;
+
+	// the timelines of the parks, mapped by the park id and by the active table
+	private volatile HashMap<Integer, ParkTimeline> timelinesById = new HashMap<>();
+	private volatile HashMap<String, ParkTimeline> timelinesByTable = new HashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param database the initialized database instance of the runtime
+	 */
+	public OccupancyTimeline(DatabaseController database) {
+		this.database = database;
+	}
+
+	///////////////////////////////////
+	/// INNER CLASS - A RESERVATION ///
+	///////////////////////////////////
+
+	/**
+	 * A class for holding a reservation whose booking is not inserted to the
+	 * database yet, so a reload of the park does not lose it
+	 */
+	private static class Reservation {
+		private final LocalDate date;
+		private final LocalTime time;
+		private final int visitors;
+
+		private Reservation(LocalDate date, LocalTime time, int visitors) {
+			this.date = date;
+			this.time = time;
+			this.visitors = visitors;
+		}
+	}
+
+	/////////////////////////////////////
+	/// INNER CLASS - A PARK TIMELINE ///
+	/////////////////////////////////////
+
+	/**
+	 * A class for holding the timeline of a single park. The visitors are counted
+	 * in atomic counters per minute and per hour, so counting a time frame and
+	 * reserving a place in it never block each other. Only reloading the park from
+	 * the database takes the timeline's lock exclusively.
+	 */
+	private class ParkTimeline {
+		private final String tableName;
+		private final ReentrantReadWriteLock reloadLock = new ReentrantReadWriteLock();
+		private LocalDate firstDay;
+		private int days;
+		private AtomicIntegerArray minutes; // the visitors booked at each minute
+		private AtomicIntegerArray hours; // the visitors booked at each hour
+		// the minute index and the number of visitors of each booking in the timeline
+		private ConcurrentHashMap<String, int[]> bookings = new ConcurrentHashMap<>();
+		// the reservations whose bookings are not inserted to the database yet
+		private final ConcurrentHashMap<String, Reservation> pending = new ConcurrentHashMap<>();
+
+		private ParkTimeline(String tableName) {
+			this.tableName = tableName;
+		}
+
+		/**
+		 * Reloads the park's active bookings of the future bookings range
+		 */
+		private void load() {
+			LocalDate today = LocalDate.now();
+			LocalDate lastDay = today.plusMonths(futureBookingsRange);
+
+			Communication selectBookings = new Communication(CommunicationType.SELF);
+			try {
+				selectBookings.setQueryType(QueryType.SELECT);
+			} catch (CommunicationException e) {
+				e.printStackTrace();
+			}
+			selectBookings.setTables(Arrays.asList(tableName));
+			selectBookings.setSelectColumns(Arrays.asList("bookingId", "dayOfVisit", "timeOfVisit", "numberOfVisitors"));
+			selectBookings.setWhereConditions(Arrays.asList("dayOfVisit", "dayOfVisit"), Arrays.asList(">=", "AND", "<="),
+					Arrays.asList(today, lastDay));
+
+			// the selection is done while holding the lock, so no write to the table is
+			// applied to the old counters and lost
+			reloadLock.writeLock().lock();
+			try {
+				ArrayList<Object[]> results = database.executeSelectQuery(selectBookings);
+				if (results == null) {
+					// the old counters may miss the write which caused the reload, so the park
+					// is not covered until its next reload, and its requests use the database
+					days = 0;
+					System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+							LocalTime.now().getSecond()) + ": Occupancy timeline of " + tableName
+							+ " failed to reload, using the database until the next reload");
+					return;
+				}
+
+				firstDay = today;
+				days = (int) ChronoUnit.DAYS.between(firstDay, lastDay) + 1;
+				minutes = new AtomicIntegerArray(days * minutesInDay);
+				hours = new AtomicIntegerArray(days * 24);
+				bookings = new ConcurrentHashMap<>();
+				for (Object[] row : results) {
+					int index = indexOf(((Date) row[1]).toLocalDate(), ((Time) row[2]).toLocalTime());
+					if (index != -1 && bookings.putIfAbsent((String) row[0], new int[] { index, (Integer) row[3] }) == null)
+						addAt(index, (Integer) row[3]);
+				}
+				// the reservations whose bookings are not inserted yet are not in the table,
+				// so they are counted again
+				for (String bookingId : pending.keySet()) {
+					Reservation reservation = pending.get(bookingId);
+					if (reservation == null)
+						continue;
+					int index = indexOf(reservation.date, reservation.time);
+					if (index != -1 && bookings.putIfAbsent(bookingId, new int[] { index, reservation.visitors }) == null)
+						addAt(index, reservation.visitors);
+				}
+			} finally {
+				reloadLock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * @return the index of the minute in the timeline, -1 if out of the range
+		 */
+		private int indexOf(LocalDate date, LocalTime time) {
+			long day = ChronoUnit.DAYS.between(firstDay, date);
+			if (day < 0 || day >= days)
+				return -1;
+			return (int) day * minutesInDay + time.getHour() * 60 + time.getMinute();
+		}
+
+		private void addAt(int index, int delta) {
+			minutes.getAndAdd(index, delta);
+			hours.getAndAdd(index / 60, delta);
+		}
+
+		/**
+		 * @return the visitors booked between the two minute indexes (included)
+		 */
+		private int sum(int first, int last) {
+			int sum = 0;
+			int index = first;
+			while (index <= last) {
+				if (index % 60 == 0 && index + 59 <= last) { // a whole hour
+					sum += hours.get(index / 60);
+					index += 60;
+				} else {
+					sum += minutes.get(index);
+					index++;
+				}
+			}
+			return sum;
+		}
+
+		private void add(String bookingId, LocalDate date, LocalTime time, int visitors) {
+			reloadLock.readLock().lock();
+			try {
+				int index = indexOf(date, time);
+				if (index != -1 && bookings.putIfAbsent(bookingId, new int[] { index, visitors }) == null)
+					addAt(index, visitors);
+			} finally {
+				reloadLock.readLock().unlock();
+			}
+		}
+
+		private void remove(String bookingId) {
+			reloadLock.readLock().lock();
+			try {
+				pending.remove(bookingId);
+				int[] booking = bookings.remove(bookingId);
+				if (booking != null)
+					addAt(booking[0], -booking[1]);
+			} finally {
+				reloadLock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * @return the first and last minute indexes between the two times (not
+		 *         included), null if the date is out of the range or the frame is
+		 *         empty
+		 */
+		private int[] frameOf(LocalDate date, LocalTime from, LocalTime to) {
+			int dayStart = indexOf(date, LocalTime.MIDNIGHT);
+			if (dayStart == -1 || from.compareTo(to) >= 0)
+				return null;
+			int first = dayStart + from.getHour() * 60 + from.getMinute() + 1;
+			int last = dayStart + to.getHour() * 60 + to.getMinute() - 1;
+			return first > last ? null : new int[] { first, last };
+		}
+
+		/**
+		 * @return the visitors booked on the date, between the two times (not
+		 *         included), or -1 if the date is out of the range
+		 */
+		private int countBetween(LocalDate date, LocalTime from, LocalTime to) {
+			reloadLock.readLock().lock();
+			try {
+				if (indexOf(date, LocalTime.MIDNIGHT) == -1)
+					return -1;
+				int[] frame = frameOf(date, from, to);
+				return frame == null ? 0 : sum(frame[0], frame[1]);
+			} finally {
+				reloadLock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Reserves the visitors of a booking at its minute, as long as the time frame
+		 * around it does not exceed the maximum. The visitors are added first and the
+		 * frame is checked after, so if two overlapping reservations are made at the
+		 * same time at least one of them sees the other, and rolls itself back. The
+		 * rolled back reservation waits for a random time before trying again, so the
+		 * two reservations do not keep rolling each other back. The reservation is
+		 * pending until its booking is inserted to the database.
+		 * 
+		 * @return reserved, frameFull, notCovered if out of the range, contended if
+		 *         the reservation kept contending with others, or alreadyReserved if
+		 *         the booking is already counted
+		 */
+		private int reserve(String bookingId, LocalDate date, LocalTime time, LocalTime from, LocalTime to,
+				int visitors, int maximum) {
+			reloadLock.readLock().lock();
+			try {
+				int index = indexOf(date, time);
+				if (index == -1)
+					return notCovered;
+				int[] frame = frameOf(date, from, to);
+				if (frame == null || index < frame[0] || index > frame[1])
+					frame = new int[] { index, index };
+				if (bookings.putIfAbsent(bookingId, new int[] { index, visitors }) != null)
+					return alreadyReserved;
+
+				for (int attempt = 0; attempt < reserveAttempts; attempt++) {
+					if (sum(frame[0], frame[1]) + visitors > maximum) {
+						bookings.remove(bookingId);
+						return frameFull;
+					}
+					addAt(index, visitors);
+					if (sum(frame[0], frame[1]) <= maximum) {
+						pending.put(bookingId, new Reservation(date, time, visitors));
+						return reserved;
+					}
+					// an overlapping reservation was made at the same time, rolling back
+					addAt(index, -visitors);
+					LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1, reserveBackoff << attempt));
+				}
+				bookings.remove(bookingId);
+				return contended;
+			} finally {
+				reloadLock.readLock().unlock();
+			}
+		}
+
+		private boolean covers(LocalDate from, LocalDate to) {
+			reloadLock.readLock().lock();
+			try {
+				return indexOf(from, LocalTime.MIDNIGHT) != -1 && indexOf(to, LocalTime.MIDNIGHT) != -1;
+			} finally {
+				reloadLock.readLock().unlock();
+			}
+		}
+	}
+
+	////////////////////////
+	/// BUILDING METHODS ///
+	////////////////////////
+
+	/**
+	 * This method (re)builds the timelines of all the parks from the database. It
+	 * is called once when the server starts, and by the background manager in
+	 * order to move the range forward as days pass
+	 */
+	public void build() {
+		// creating a communication instance for fetching the up to date parks
+		Communication getParks = new Communication(CommunicationType.SELF);
+		try {
+			getParks.setQueryType(QueryType.SELECT);
+		} catch (CommunicationException e) {
+			e.printStackTrace();
+		}
+		getParks.setTables(Arrays.asList(Communication.park));
+		getParks.setSelectColumns(Arrays.asList("*"));
+		ArrayList<Object[]> results = database.executeSelectQuery(getParks);
+		if (results == null)
+			return;
+
+		HashMap<Integer, ParkTimeline> byId = new HashMap<>();
+		HashMap<String, ParkTimeline> byTable = new HashMap<>();
+		for (Object[] row : results) {
+			Park park = new Park((Integer) row[0], (String) row[1], (String) row[2], (String) row[3],
+					(String) row[4], (String) row[5], (String) row[6], (Integer) row[7], (Integer) row[8],
+					(Integer) row[9], (Integer) row[10]);
+			String tableName = parkControl.nameOfTable(park) + Communication.activeBookings;
+			// reloading the existing timeline, so updates of the park are never lost
+			ParkTimeline timeline = timelinesByTable.get(tableName);
+			if (timeline == null)
+				timeline = new ParkTimeline(tableName);
+			timeline.load();
+			byId.put(park.getParkId(), timeline);
+			byTable.put(tableName, timeline);
+		}
+		timelinesById = byId;
+		timelinesByTable = byTable;
+
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Occupancy timeline is built for " + byId.size() + " parks");
+	}
+
+	////////////////////////
+	/// UPDATING METHODS ///
+	////////////////////////
+
+	/**
+	 * This method is called after a write query was executed successfully. If the
+	 * query changed an active bookings table, the park's timeline is updated
+	 * accordingly.
+	 *
+	 * @param request the executed INSERT/UPDATE/DELETE request
+	 */
+	public void applyUpdate(Communication request) {
+		if (request.getTables() == null || request.getTables().isEmpty())
+			return;
+		ParkTimeline timeline = timelinesByTable.get(request.getTables().get(0));
+		if (timeline == null) // not an active bookings table
+			return;
+
+		switch (request.getQueryType()) {
+		case INSERT: {
+			ArrayList<String> columns = request.getColumns();
+			ArrayList<Object> values = request.getValues();
+			int id = columns.indexOf("bookingId"), date = columns.indexOf("dayOfVisit"),
+					time = columns.indexOf("timeOfVisit"), visitors = columns.indexOf("numberOfVisitors");
+			if (id == -1 || date == -1 || time == -1 || visitors == -1
+					|| !(values.get(date) instanceof LocalDate) || !(values.get(time) instanceof LocalTime)) {
+				timeline.load();
+				return;
+			}
+			timeline.add(values.get(id).toString(), (LocalDate) values.get(date), (LocalTime) values.get(time),
+					((Number) values.get(visitors)).intValue());
+			break;
+		}
+		case DELETE: {
+			String bookingId = bookingIdOf(request);
+			if (bookingId == null) { // not a single booking deletion, reloading the park
+				timeline.load();
+				return;
+			}
+			timeline.remove(bookingId);
+			break;
+		}
+		case UPDATE: {
+			ArrayList<String> columns = request.getColumns();
+			// only changes to these columns are changing the park's occupancy
+			if (columns.contains("dayOfVisit") || columns.contains("timeOfVisit")
+					|| columns.contains("numberOfVisitors")) {
+				timeline.load();
+			}
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * This method reserves a place for a new booking, sent with the
+	 * INSERT_BOOKING_AFTER_CHECKING_CAPACITIES secondary request, before it is
+	 * inserted to the database. Only reservations with overlapping time frames
+	 * are contending with each other. After the insertion, the reservation is
+	 * confirmed, or released if the insertion failed.
+	 * 
+	 * @param request the booking insertion request
+	 * @return reserved, frameFull if the park is full in the booking's time frame,
+	 *         notCovered if the timeline can't answer and the database has to count
+	 *         the time frame, contended if the reservation kept contending with
+	 *         others, or alreadyReserved if the booking is already counted
+	 */
+	public int reserve(Communication request) {
+		ParkTimeline timeline = timeFrameTimelineOf(request);
+		if (timeline == null)
+			return notCovered;
+		ArrayList<String> columns = request.getColumns();
+		ArrayList<Object> values = request.getValues();
+		int id = columns.indexOf("bookingId"), time = columns.indexOf("timeOfVisit"),
+				visitors = columns.indexOf("numberOfVisitors");
+		if (id == -1 || time == -1 || visitors == -1 || !(values.get(time) instanceof LocalTime))
+			return notCovered;
+
+		ArrayList<Object> whereValues = request.getWhereValues();
+		return timeline.reserve(values.get(id).toString(), (LocalDate) whereValues.get(0),
+				(LocalTime) values.get(time), (LocalTime) whereValues.get(1), (LocalTime) whereValues.get(2),
+				((Number) values.get(visitors)).intValue(), request.getParkCapacities());
+	}
+
+	/**
+	 * This method reserves a place for a booking of a park, as long as the number
+	 * of visitors booked in the time frame around it does not exceed the maximum
+	 *
+	 * @param parkId    the park's id
+	 * @param bookingId the booking's id
+	 * @param date      the booking's day of visit
+	 * @param time      the booking's time of visit
+	 * @param timeLimit the park's time limit in hours, the time frame around the
+	 *                  booking
+	 * @param visitors  the booking's number of visitors
+	 * @param maximum   the park's maximum orders amount
+	 * @return reserved, frameFull if the park is full in the booking's time frame,
+	 *         notCovered if the timeline can't answer, contended if the reservation
+	 *         kept contending with others, or alreadyReserved if the booking is
+	 *         already counted
+	 */
+	public int reserve(int parkId, String bookingId, LocalDate date, LocalTime time, int timeLimit, int visitors,
+			int maximum) {
+		ParkTimeline timeline = timelinesById.get(parkId);
+		if (timeline == null)
+			return notCovered;
+		return timeline.reserve(bookingId, date, time, time.minusHours(timeLimit), time.plusHours(timeLimit),
+				visitors, maximum);
+	}
+
+	/**
+	 * This method confirms a reservation made by reserve(), after the booking was
+	 * inserted to the database
+	 * 
+	 * @param request the booking insertion request
+	 */
+	public void confirm(Communication request) {
+		ParkTimeline timeline = timelinesByTable.get(request.getTables().get(0));
+		int id = request.getColumns().indexOf("bookingId");
+		if (timeline != null && id != -1)
+			timeline.pending.remove(request.getValues().get(id).toString());
+	}
+
+	/**
+	 * This method releases a reservation made by reserve(), in case inserting the
+	 * booking to the database has failed
+	 * 
+	 * @param request the booking insertion request
+	 */
+	public void release(Communication request) {
+		ParkTimeline timeline = timelinesByTable.get(request.getTables().get(0));
+		int id = request.getColumns().indexOf("bookingId");
+		if (timeline != null && id != -1)
+			timeline.remove(request.getValues().get(id).toString());
+	}
+
+	/**
+	 * This method checks if a critical request can be handled by the timeline
+	 * without acquiring the park's semaphore. This is true for time frame capacity
+	 * checks and booking insertions, of dates the timeline holds.
+	 * 
+	 * @param request
+	 * @return true if the park's semaphore is not needed
+	 */
+	public boolean isLockFree(Communication request) {
+		if (request.getSecondaryRequest() != SecondaryRequest.COUNT_VISITORS_IN_TIME_FRAME
+				&& request.getSecondaryRequest() != SecondaryRequest.INSERT_BOOKING_AFTER_CHECKING_CAPACITIES)
+			return false;
+		ParkTimeline timeline = timeFrameTimelineOf(request);
+		if (timeline == null)
+			return false;
+		LocalDate date = (LocalDate) request.getWhereValues().get(0);
+		return timeline.covers(date, date);
+	}
+
+	/**
+	 * @return the timeline of a "SELECT ... FROM (active table) WHERE dayOfVisit =
+	 *         ? AND timeOfVisit > ? AND timeOfVisit < ?" request, null if the
+	 *         request is not of this form
+	 */
+	private ParkTimeline timeFrameTimelineOf(Communication request) {
+		if (request.getTables() == null || request.getTables().size() != 1)
+			return null;
+		ParkTimeline timeline = timelinesByTable.get(request.getTables().get(0));
+		ArrayList<String> whereColumns = request.getWhereColumns();
+		if (timeline == null || whereColumns == null
+				|| !whereColumns.equals(Arrays.asList("dayOfVisit", "timeOfVisit", "timeOfVisit"))
+				|| !request.getWhereOperators().equals(Arrays.asList("=", "AND", ">", "AND", "<")))
+			return null;
+		ArrayList<Object> whereValues = request.getWhereValues();
+		if (!(whereValues.get(0) instanceof LocalDate) || !(whereValues.get(1) instanceof LocalTime)
+				|| !(whereValues.get(2) instanceof LocalTime))
+			return null;
+		return timeline;
+	}
+
+	/**
+	 * @return the booking id of a "WHERE bookingId = ?" request, null otherwise
+	 */
+	private String bookingIdOf(Communication request) {
+		ArrayList<String> whereColumns = request.getWhereColumns();
+		if (whereColumns == null || whereColumns.size() != 1 || !whereColumns.get(0).equals("bookingId")
+				|| !request.getWhereOperators().get(0).equals("="))
+			return null;
+		return request.getWhereValues().get(0).toString();
+	}
+
+	/**
+	 * This method reloads a single park's timeline from the database
+	 *
+	 * @param parkId
+	 */
+	public void reloadPark(int parkId) {
+		ParkTimeline timeline = timelinesById.get(parkId);
+		if (timeline != null)
+			timeline.load();
+	}
+
+	///////////////////////
+	/// GETTING METHODS ///
+	///////////////////////
+
+	/**
+	 * This method returns the number of visitors booked in a park on a date,
+	 * between two times (not included)
+	 *
+	 * @param parkId
+	 * @param date
+	 * @param from
+	 * @param to
+	 * @return the number of visitors, or -1 if the timeline can't answer and the
+	 *         database has to be queried
+	 */
+	public int countVisitors(int parkId, LocalDate date, LocalTime from, LocalTime to) {
+		ParkTimeline timeline = timelinesById.get(parkId);
+		if (timeline == null)
+			return -1;
+		return timeline.countBetween(date, from, to);
+	}
+
+	/**
+	 * This method gets a SELECT request of the form "SELECT numberOfVisitors FROM
+	 * (active table) WHERE dayOfVisit = ? AND timeOfVisit > ? AND timeOfVisit < ?"
+	 * and answers it from the timeline, as a single row holding the sum of the
+	 * visitors.
+	 *
+	 * @param request
+	 * @return the result list, or null if the request has to be sent to the
+	 *         database
+	 */
+	public ArrayList<Object[]> answerTimeFrameSelect(Communication request) {
+		ParkTimeline timeline = timeFrameTimelineOf(request);
+		if (timeline == null)
+			return null;
+
+		ArrayList<Object> whereValues = request.getWhereValues();
+		int count = timeline.countBetween((LocalDate) whereValues.get(0), (LocalTime) whereValues.get(1),
+				(LocalTime) whereValues.get(2));
+		if (count == -1)
+			return null;
+		ArrayList<Object[]> result = new ArrayList<>();
+		result.add(new Object[] { count });
+		return result;
+	}
+
+	/**
+	 * @param parkId
+	 * @param from
+	 * @param to
+	 * @return true if the park's timeline holds all the dates in the range
+	 */
+	public boolean covers(int parkId, LocalDate from, LocalDate to) {
+		ParkTimeline timeline = timelinesById.get(parkId);
+		return timeline != null && timeline.covers(from, to);
+	}
+}
@@ -0,0 +1,180 @@
+package serverSide.control;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import serverSide.control.GoNatureServer.RequestClass;
+
+/**
+ * This class handles the clients' requests with a pool of worker threads, and a
+ * separate queue for every class of requests. A free worker takes the next
+ * request by weighted fair scheduling between the queues which are not empty:
+ * every class gets a share of the workers by its weight, so a burst of requests
+ * of a light class, such as the reports, can't delay the requests of a heavy
+ * class, such as the gate operations, and a light class is still never starved.
+ */
+public class PriorityDispatcher {
+	// a queued request, with the time it was queued for the statistics
+	private static class Task {
+		private final Runnable runnable;
+		private final long queuedAt = System.nanoTime();
+
+		private Task(Runnable runnable) {
+			this.runnable = runnable;
+		}
+	}
+
+	private final EnumMap<RequestClass, ArrayDeque<Task>> queues = new EnumMap<>(RequestClass.class);
+	private final EnumMap<RequestClass, Integer> credits = new EnumMap<>(RequestClass.class);
+	private final int queueSize;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition isNotEmpty = lock.newCondition();
+	private boolean isShutdown = false;
+
+	// dispatching statistics, by the classes' ordinals
+	private final long[] dispatched = new long[RequestClass.values().length];
+	private final long[] waitingNanos = new long[RequestClass.values().length];
+
+	/**
+	 * Constructor, starts the workers
+	 *
+	 * @param name      the name of the workers' threads
+	 * @param threads   the number of workers
+	 * @param queueSize the number of requests waiting in the queue of each class
+	 */
+	public PriorityDispatcher(String name, int threads, int queueSize) {
+		this.queueSize = queueSize;
+		for (RequestClass requestClass : RequestClass.values()) {
+			if (requestClass.getWeight() > 0) {
+				queues.put(requestClass, new ArrayDeque<>());
+				credits.put(requestClass, 0);
+			}
+		}
+		for (int i = 1; i <= threads; i++)
+			new Thread(this::work, name + "-" + i).start();
+	}
+
+	/**
+	 * This method queues a request for the workers
+	 *
+	 * @param requestClass the class of the request
+	 * @param request      the handling of the request
+	 * @throws RejectedExecutionException if the queue of the class is full, or the
+	 *                                    dispatcher was shut down
+	 */
+	public void execute(RequestClass requestClass, Runnable request) {
+		ArrayDeque<Task> queue = queues.get(requestClass);
+		if (queue == null)
+			throw new IllegalArgumentException(requestClass + " requests are not dispatched");
+		lock.lock();
+		try {
+			if (isShutdown || queue.size() >= queueSize)
+				throw new RejectedExecutionException(requestClass + " queue is full");
+			queue.add(new Task(request));
+			isNotEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * This method chooses the next request by smooth weighted round robin: every
+	 * class with waiting requests earns its weight in credits, the class with the
+	 * most credits is chosen, and pays the total weight of the competing classes.
+	 * Must be called while holding the lock.
+	 *
+	 * @return the next request, null if there are no waiting requests
+	 */
+	private Task next() {
+		RequestClass chosen = null;
+		int totalWeight = 0;
+		for (RequestClass requestClass : queues.keySet()) {
+			if (queues.get(requestClass).isEmpty())
+				continue;
+			credits.put(requestClass, credits.get(requestClass) + requestClass.getWeight());
+			totalWeight += requestClass.getWeight();
+			if (chosen == null || credits.get(requestClass) > credits.get(chosen))
+				chosen = requestClass;
+		}
+		if (chosen == null)
+			return null;
+
+		ArrayDeque<Task> queue = queues.get(chosen);
+		Task task = queue.poll();
+		// a class's credits are kept only while it has waiting requests
+		credits.put(chosen, queue.isEmpty() ? 0 : credits.get(chosen) - totalWeight);
+		dispatched[chosen.ordinal()]++;
+		waitingNanos[chosen.ordinal()] += System.nanoTime() - task.queuedAt;
+		return task;
+	}
+
+	/**
+	 * The loop of a worker, which handles the requests until the dispatcher is shut
+	 * down and its queues are empty
+	 */
+	private void work() {
+		while (true) {
+			Task task;
+			lock.lock();
+			try {
+				while ((task = next()) == null) {
+					if (isShutdown)
+						return;
+					isNotEmpty.await();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+
+			try {
+				task.runnable.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * This method stops the workers after they handle the requests they already
+	 * got, no more requests are accepted
+	 */
+	public void shutdown() {
+		lock.lock();
+		try {
+			isShutdown = true;
+			isNotEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return a summary of the dispatching statistics, for every class: the
+	 *         waiting requests, the dispatched requests and their average waiting
+	 *         time
+	 */
+	public String getStatistics() {
+		StringBuilder statistics = new StringBuilder("Request dispatching:");
+		lock.lock();
+		try {
+			for (RequestClass requestClass : queues.keySet()) {
+				int i = requestClass.ordinal();
+				statistics.append(" " + requestClass + " " + queues.get(requestClass).size() + " waiting, "
+						+ dispatched[i] + " dispatched (average wait " + String.format("%.3f",
+								dispatched[i] == 0 ? 0 : waitingNanos[i] / (double) TimeUnit.MILLISECONDS.toNanos(1)
+										/ dispatched[i])
+						+ " ms);");
+			}
+		} finally {
+			lock.unlock();
+		}
+		statistics.setLength(statistics.length() - 1);
+		return statistics.toString();
+	}
+}
@@ -0,0 +1,106 @@
+package serverSide.control;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import common.communication.Communication;
+import common.communication.Communication.CommunicationType;
+import common.communication.Communication.ServerMessageType;
+import ocsf.server.ConnectionToClient;
+
+/**
+ * This class holds the clients' subscriptions to topics, and pushes the
+ * server's events to the subscribed clients, so the clients do not have to
+ * query the database again for learning about state changes. A topic is a
+ * string such as "park:1:occupancy" (see the topics of the Communication
+ * class), and a pushed message holds its content as a result list.
+ */
+public class PushChannel {
+	// the clients subscribed to each topic
+	private ConcurrentHashMap<String, Set<ConnectionToClient>> topics = new ConcurrentHashMap<>();
+
+	/**
+	 * This method subscribes a client to a topic
+	 *
+	 * @param topic  the topic
+	 * @param client the subscribing client
+	 */
+	public void subscribe(String topic, ConnectionToClient client) {
+		topics.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(client);
+	}
+
+	/**
+	 * This method unsubscribes a client from a topic
+	 *
+	 * @param topic  the topic
+	 * @param client the unsubscribing client
+	 */
+	public void unsubscribe(String topic, ConnectionToClient client) {
+		Set<ConnectionToClient> subscribers = topics.get(topic);
+		if (subscribers != null) {
+			subscribers.remove(client);
+			if (subscribers.isEmpty())
+				topics.remove(topic, subscribers);
+		}
+	}
+
+	/**
+	 * This method unsubscribes a client from all of its topics, after it was
+	 * disconnected
+	 *
+	 * @param client the disconnected client
+	 */
+	public void removeClient(ConnectionToClient client) {
+		for (String topic : topics.keySet())
+			unsubscribe(topic, client);
+	}
+
+	/**
+	 * This method pushes a message to all the clients subscribed to the topic. A
+	 * client which can't be reached is unsubscribed from all of its topics. The
+	 * publisher never waits for a client which does not read its messages, the
+	 * message is dropped for this client instead.
+	 *
+	 * @param topic   the topic
+	 * @param content the content of the message
+	 */
+	public void publish(String topic, ArrayList<Object[]> content) {
+		Set<ConnectionToClient> subscribers = topics.get(topic);
+		if (subscribers == null || subscribers.isEmpty())
+			return;
+
+		Communication push = new Communication(CommunicationType.SERVER_CLIENT_MESSAGE);
+		push.setServerMessageType(ServerMessageType.PUSH);
+		push.setTopic(topic);
+		push.setResultList(content);
+		int dropped = 0;
+		for (ConnectionToClient client : subscribers) {
+			try {
+				if (!client.offerToClient(push))
+					dropped++;
+			} catch (IOException e) {
+				removeClient(client);
+			}
+		}
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Pushed " + topic + " to " + subscribers.size() + " clients"
+						+ (dropped == 0 ? "" : ", dropped for " + dropped + " clients not reading"));
+	}
+
+	/**
+	 * This method pushes a message of a single row to all the clients subscribed to
+	 * the topic
+	 *
+	 * @param topic  the topic
+	 * @param values the values of the row
+	 */
+	public void publish(String topic, Object... values) {
+		ArrayList<Object[]> content = new ArrayList<>();
+		content.add(values);
+		publish(topic, content);
+	}
+}
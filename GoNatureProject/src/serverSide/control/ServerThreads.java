@@ -0,0 +1,127 @@
+package serverSide.control;
+
+import java.lang.reflect.Method;
+import java.time.LocalTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class creates the threads handling the server's requests. The server can
+ * run in one of two modes, chosen by the "gonature.threads" system property:
+ * PLATFORM (the default) handles the requests with pools of platform threads,
+ * and VIRTUAL starts a virtual thread for every request, so requests blocked on
+ * the database or on the mail server do not hold a platform thread. Virtual
+ * threads require Java 21, on older runtimes the VIRTUAL mode falls back to the
+ * platform pools.
+ */
+public class ServerThreads {
+	/**
+	 * The modes of the server's threads
+	 */
+	public enum ThreadMode {
+		PLATFORM, VIRTUAL
+	}
+
+	private static final ThreadMode mode = readMode();
+	private static final boolean isVirtual = mode == ThreadMode.VIRTUAL && areVirtualThreadsSupported();
+
+	/**
+	 * @return the mode chosen by the "gonature.threads" system property
+	 */
+	private static ThreadMode readMode() {
+		try {
+			return ThreadMode.valueOf(System.getProperty("gonature.threads", "PLATFORM").toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return ThreadMode.PLATFORM;
+		}
+	}
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	private static boolean areVirtualThreadsSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			System.out.println(
+					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+							+ ": Virtual threads are not supported by this runtime, using platform threads");
+			return false;
+		}
+	}
+
+	/**
+	 * @param name the name of the factory's threads
+	 * @return a factory of virtual threads
+	 */
+	private static ThreadFactory newVirtualFactory(String name) throws ReflectiveOperationException {
+		// Thread.ofVirtual().name(name + "-", 1).factory(), called by reflection so the
+		// server still runs on older runtimes
+		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+		builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+		return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+	}
+
+	/**
+	 * @return true if the requests are handled by virtual threads
+	 */
+	public static boolean isVirtual() {
+		return isVirtual;
+	}
+
+	/**
+	 * This method creates an executor for handling the clients' requests. In the
+	 * VIRTUAL mode every request is handled by a new virtual thread. Otherwise, the
+	 * requests are handled by a pool of platform threads, with a bounded queue of
+	 * waiting requests. When the queue is full, the request is rejected with a
+	 * RejectedExecutionException, so the selector thread submitting it never stops
+	 * reading the other clients' requests
+	 *
+	 * @param name      the name of the executor's threads
+	 * @param threads   the number of platform threads
+	 * @param queueSize the number of requests waiting for a platform thread
+	 * @return the executor
+	 */
+	public static ExecutorService newRequestExecutor(String name, int threads, int queueSize) {
+		return newExecutor(name, threads, queueSize, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * This method creates an executor for the tasks submitted by the request
+	 * handling threads, such as the selections of a batch. As in the request
+	 * executor, but when the queue is full, the task is executed by the submitting
+	 * thread, which slows down the request submitting it
+	 *
+	 * @param name      the name of the executor's threads
+	 * @param threads   the number of platform threads
+	 * @param queueSize the number of tasks waiting for a platform thread
+	 * @return the executor
+	 */
+	public static ExecutorService newTaskExecutor(String name, int threads, int queueSize) {
+		return newExecutor(name, threads, queueSize, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	private static ExecutorService newExecutor(String name, int threads, int queueSize,
+			RejectedExecutionHandler rejectionHandler) {
+		if (isVirtual) {
+			try {
+				Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+				return (ExecutorService) perTask.invoke(null, newVirtualFactory(name));
+			} catch (ReflectiveOperationException e) {
+				e.printStackTrace();
+			}
+		}
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = runnable -> new Thread(runnable, name + "-" + count.incrementAndGet());
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), factory, rejectionHandler);
+	}
+}
@@ -13,6 +13,7 @@ import serverSide.jdbc.DatabaseException;
 
 public class StaffController {
 	private DatabaseController database;
+	private UsersIndex users;
 
 	public enum ImportStatus {
 		SUCCESS, NOTHING_TO_IMPORT, FAILURE
@@ -22,9 +23,11 @@ public class StaffController {
 	 * Private constructor to prevent external instantiation.
 	 * 
 	 * @param database The database controller used for database operations.
+	 * @param users    The users index, updated with every imported user.
 	 */
-	public StaffController(DatabaseController database) {
+	public StaffController(DatabaseController database, UsersIndex users) {
 		this.database = database;
+		this.users = users;
 	}
 
 	/**
@@ -187,6 +190,7 @@ public class StaffController {
 		if (!insertResult) {
 			throw new DatabaseException("Problem with Emplyee INSERT query");
 		}
+		users.applyInsert(request);
 	}
 
 	/**
@@ -219,6 +223,7 @@ public class StaffController {
 		if (!insertResult) {
 			throw new DatabaseException("Problem with Park Manager INSERT query");
 		}
+		users.applyInsert(request);
 	}
 
 	/**
@@ -252,6 +257,7 @@ public class StaffController {
 		if (!insertResult) {
 			throw new DatabaseException("Problem with Department Manager INSERT query");
 		}
+		users.applyInsert(request);
 	}
 
 	/**
@@ -284,6 +290,7 @@ public class StaffController {
 		if (!insertResult) {
 			throw new DatabaseException("Problem with Representative INSERT query");
 		}
+		users.applyInsert(request);
 	}
 
 	public ArrayList<Object[]> getNewUserDetails(String id) {
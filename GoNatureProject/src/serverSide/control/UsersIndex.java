@@ -0,0 +1,334 @@
+package serverSide.control;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import clientSide.control.ParkController;
+import common.communication.Communication;
+import common.communication.Communication.CommunicationType;
+import common.communication.Communication.QueryType;
+import common.communication.CommunicationException;
+import common.entities.Park;
+import serverSide.jdbc.DatabaseController;
+
+/**
+ * This class holds an in-memory index of the system users' usernames, mapped to
+ * the tables holding them (group guides, park managers, department managers,
+ * representatives and each park's employees). This allows authenticating a
+ * user with a single keyed query on the user's own table, instead of trying
+ * every table. The index is built when the server starts and updated after every
+ * insertion, deletion and username change of a user executed by the server. A
+ * change made directly in the database is indexed only after a restart.
+ */
+public class UsersIndex {
+	private DatabaseController database;
+
+	// the tables holding each username, in the order they are checked
+	private ConcurrentHashMap<String, List<UserEntry>> users = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param database the initialized database instance of the runtime
+	 */
+	public UsersIndex(DatabaseController database) {
+		this.database = database;
+	}
+
+	////////////////////////////////
+	/// INNER CLASS - USER ENTRY ///
+	////////////////////////////////
+
+	/**
+	 * A class for holding the table of a user, and the park's id if the user is a
+	 * park employee
+	 */
+	private static class UserEntry {
+		private final String tableName;
+		private final int parkId; // -1 if the user is not a park employee
+
+		private UserEntry(String tableName, int parkId) {
+			this.tableName = tableName;
+			this.parkId = parkId;
+		}
+	}
+
+	////////////////////////
+	/// BUILDING METHODS ///
+	////////////////////////
+
+	/**
+	 * This method builds the index from the users tables of the database. It is
+	 * called once when the server starts
+	 */
+	public void build() {
+		users.clear();
+		// the tables are indexed in the same order they were checked on login
+		indexTable(Communication.groupGuide, -1);
+		indexTable(Communication.parkManager, -1);
+		indexTable(Communication.departmentManager, -1);
+		indexTable(Communication.representative, -1);
+
+		for (Park park : selectParks())
+			indexTable(employeesTableOf(park), park.getParkId());
+
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ ": Users index is built for " + users.size() + " usernames");
+	}
+
+	private void indexTable(String tableName, int parkId) {
+		ArrayList<Object[]> results = select(tableName, Arrays.asList("userName"), null, null);
+		if (results == null)
+			return;
+		for (Object[] row : results)
+			if (row[0] != null)
+				add((String) row[0], tableName, parkId);
+	}
+
+	/**
+	 * This method adds a user to the index
+	 *
+	 * @param userName  the user's username
+	 * @param tableName the table the user was inserted to
+	 * @param parkId    the park's id if the user is a park employee, -1 if not
+	 */
+	public void add(String userName, String tableName, int parkId) {
+		users.compute(userName, (key, entries) -> {
+			if (entries == null)
+				entries = new CopyOnWriteArrayList<>();
+			for (UserEntry entry : entries)
+				if (entry.tableName.equals(tableName))
+					return entries;
+			entries.add(new UserEntry(tableName, parkId));
+			return entries;
+		});
+	}
+
+	/**
+	 * This method indexes a users table again, after some of its users were
+	 * deleted or their usernames were changed. The current usernames are added
+	 * before the old ones are removed, so an existing user is never missing from
+	 * the index
+	 *
+	 * @param tableName the users table
+	 */
+	private void reindexTable(String tableName) {
+		int parkId = -1;
+		if (tableName.endsWith(Communication.parkEmployees)) {
+			Park park = parkOfTable(tableName);
+			if (park == null)
+				return;
+			parkId = park.getParkId();
+		} else if (!isUsersTable(tableName))
+			return;
+
+		ArrayList<Object[]> results = select(tableName, Arrays.asList("userName"), null, null);
+		if (results == null)
+			return;
+		HashSet<String> userNames = new HashSet<>();
+		for (Object[] row : results)
+			if (row[0] != null)
+				userNames.add((String) row[0]);
+
+		for (String userName : userNames)
+			add(userName, tableName, parkId);
+		for (String userName : users.keySet())
+			if (!userNames.contains(userName))
+				users.computeIfPresent(userName, (key, entries) -> {
+					entries.removeIf(entry -> entry.tableName.equals(tableName));
+					return entries.isEmpty() ? null : entries;
+				});
+	}
+
+	/**
+	 * This method is called after an INSERT query was executed successfully. If
+	 * the query inserted a user to one of the users tables, the user is added to
+	 * the index.
+	 *
+	 * @param request the executed INSERT request
+	 */
+	public void applyInsert(Communication request) {
+		if (request.getTables() == null || request.getTables().isEmpty() || request.getColumns() == null)
+			return;
+		int userName = request.getColumns().indexOf("userName");
+		if (userName == -1)
+			return;
+		String tableName = request.getTables().get(0);
+		if (isUsersTable(tableName))
+			add(request.getValues().get(userName).toString(), tableName, -1);
+		else if (tableName.endsWith(Communication.parkEmployees)) {
+			Park park = parkOfTable(tableName);
+			if (park != null)
+				add(request.getValues().get(userName).toString(), tableName, park.getParkId());
+		}
+	}
+
+	/**
+	 * This method is called after an UPDATE query was executed successfully. If
+	 * the query changed usernames in one of the users tables, the table is indexed
+	 * again.
+	 *
+	 * @param request the executed UPDATE request
+	 */
+	public void applyUpdate(Communication request) {
+		if (request.getTables() == null || request.getTables().isEmpty() || request.getColumns() == null
+				|| !request.getColumns().contains("userName"))
+			return;
+		reindexTable(request.getTables().get(0));
+	}
+
+	/**
+	 * This method is called after a DELETE query was executed successfully. If the
+	 * query deleted users from one of the users tables, the table is indexed
+	 * again.
+	 *
+	 * @param request the executed DELETE request
+	 */
+	public void applyDelete(Communication request) {
+		if (request.getTables() == null || request.getTables().isEmpty())
+			return;
+		reindexTable(request.getTables().get(0));
+	}
+
+	/**
+	 * This method is called after each query of a transaction was committed
+	 *
+	 * @param request the executed request
+	 */
+	public void apply(Communication request) {
+		switch (request.getQueryType()) {
+		case INSERT:
+			applyInsert(request);
+			break;
+		case UPDATE:
+			applyUpdate(request);
+			break;
+		case DELETE:
+			applyDelete(request);
+			break;
+		default:
+			break;
+		}
+	}
+
+	//////////////////////////////
+	/// AUTHENTICATION METHODS ///
+	//////////////////////////////
+
+	/**
+	 * This method authenticates a user by the username and password of the
+	 * request's where conditions. The user's row is selected from the indexed table
+	 * only, and the table's name is set as the request's table.
+	 *
+	 * @param request a SELECT request with the userName and password where
+	 *                conditions
+	 * @return a list with the user's row, followed by the park's row if the user is
+	 *         a park employee. An empty list if the credentials do not exist, and
+	 *         null if there was a problem with the database
+	 */
+	public ArrayList<Object[]> authenticate(Communication request) {
+		ArrayList<String> whereColumns = request.getWhereColumns();
+		if (whereColumns == null || whereColumns.indexOf("userName") == -1 || whereColumns.indexOf("password") == -1)
+			return new ArrayList<>();
+		Object userName = request.getWhereValues().get(whereColumns.indexOf("userName"));
+		Object password = request.getWhereValues().get(whereColumns.indexOf("password"));
+		List<UserEntry> entries = userName == null ? null : users.get(userName.toString());
+		if (entries == null)
+			return new ArrayList<>();
+
+		for (UserEntry entry : entries) {
+			ArrayList<Object[]> results = select(entry.tableName, Arrays.asList("*"),
+					Arrays.asList("userName", "password"), Arrays.asList(userName, password));
+			if (results == null)
+				return null;
+			if (results.isEmpty())
+				continue;
+
+			request.setTables(Arrays.asList(entry.tableName));
+			ArrayList<Object[]> authenticated = new ArrayList<>();
+			authenticated.add(results.get(0));
+			if (entry.parkId != -1) { // adding the park the employee is working in
+				ArrayList<Object[]> park = select(Communication.park, Arrays.asList("*"), Arrays.asList("parkId"),
+						Arrays.asList(entry.parkId));
+				if (park == null || park.isEmpty())
+					return null;
+				authenticated.add(park.get(0));
+			}
+			return authenticated;
+		}
+		return new ArrayList<>();
+	}
+
+	/**
+	 * @return the rows of the table, matching the where columns (joined by AND) if
+	 *         there are any
+	 */
+	private ArrayList<Object[]> select(String tableName, List<String> selectColumns, List<String> whereColumns,
+			List<Object> whereValues) {
+		Communication select = new Communication(CommunicationType.SELF);
+		try {
+			select.setQueryType(QueryType.SELECT);
+		} catch (CommunicationException e) {
+			e.printStackTrace();
+		}
+		select.setTables(Arrays.asList(tableName));
+		select.setSelectColumns(selectColumns);
+		if (whereColumns != null) {
+			ArrayList<String> operators = new ArrayList<>();
+			for (int i = 0; i < whereColumns.size(); i++) {
+				if (i > 0)
+					operators.add("AND");
+				operators.add("=");
+			}
+			select.setWhereConditions(whereColumns, operators, whereValues);
+		}
+		return database.executeSelectQuery(select);
+	}
+
+	/**
+	 * @return the parks of the database, or an empty list if there was a problem
+	 *         with the database
+	 */
+	private ArrayList<Park> selectParks() {
+		ArrayList<Park> parks = new ArrayList<>();
+		ArrayList<Object[]> results = select(Communication.park, Arrays.asList("*"), null, null);
+		if (results != null)
+			for (Object[] row : results)
+				parks.add(new Park((Integer) row[0], (String) row[1], (String) row[2], (String) row[3],
+						(String) row[4], (String) row[5], (String) row[6], (Integer) row[7], (Integer) row[8],
+						(Integer) row[9], (Integer) row[10]));
+		return parks;
+	}
+
+	/**
+	 * @return the park of the employees table, or null if there is none
+	 */
+	private Park parkOfTable(String tableName) {
+		for (Park park : selectParks())
+			if (employeesTableOf(park).equals(tableName))
+				return park;
+		return null;
+	}
+
+	/**
+	 * @return true if the table holds users who are not park employees
+	 */
+	private static boolean isUsersTable(String tableName) {
+		return tableName.equals(Communication.groupGuide) || tableName.equals(Communication.parkManager)
+				|| tableName.equals(Communication.departmentManager)
+				|| tableName.equals(Communication.representative);
+	}
+
+	/**
+	 * @return the employees table of the park
+	 */
+	private String employeesTableOf(Park park) {
+		return ParkController.getInstance().nameOfTable(park) + Communication.parkEmployees;
+	}
+}
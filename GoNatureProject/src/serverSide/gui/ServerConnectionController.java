@@ -5,8 +5,12 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.time.LocalTime;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import common.controllers.AbstractScreen;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -411,10 +415,24 @@ public class ServerConnectionController extends AbstractScreen {
 		ConsoleOutput consoleOutput = new ConsoleOutput(consoleArea);
 		System.setOut(new PrintStream(consoleOutput, true));
 		System.setErr(new PrintStream(consoleOutput, true));
+		consoleOutput.start();
 	}
 
+	/**
+	 * An output stream that shows the console output in the text area. The written
+	 * text is queued without blocking the writing threads, and the text area is
+	 * updated with all the queued text once every frame period. Only the last
+	 * lines of the output are kept in the text area.
+	 */
 	public static class ConsoleOutput extends OutputStream {
-		private TextArea output;
+		private static final long framePeriod = 100_000_000; // in nanoseconds
+		private static final int maximumPending = 1 << 20; // characters waiting for the next frame
+		private static final int scrollback = 200_000; // characters kept in the text area
+
+		private final TextArea output;
+		private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger pendingLength = new AtomicInteger();
+		private final AtomicLong dropped = new AtomicLong();
 
 		public ConsoleOutput(TextArea ta) {
 			this.output = ta;
@@ -422,10 +440,69 @@ public class ServerConnectionController extends AbstractScreen {
 
 		@Override
 		public void write(int i) throws IOException {
-			// Append the character to the TextArea (in the JavaFX Application Thread)
-			javafx.application.Platform.runLater(() -> output.appendText(String.valueOf((char) i)));
+			offer(String.valueOf((char) i));
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			offer(new String(b, off, len));
+		}
+
+		private void offer(String text) {
+			// the text is dropped if the text area does not keep up with the output
+			if (pendingLength.addAndGet(text.length()) > maximumPending) {
+				pendingLength.addAndGet(-text.length());
+				dropped.addAndGet(text.length());
+				return;
+			}
+			pending.offer(text);
 		}
 
+		/**
+		 * This method starts updating the text area (in the JavaFX Application
+		 * Thread) once every frame period
+		 */
+		public void start() {
+			AnimationTimer flushTimer = new AnimationTimer() {
+				private long lastFlush;
+
+				@Override
+				public void handle(long now) {
+					if (now - lastFlush < framePeriod)
+						return;
+					lastFlush = now;
+					showPending();
+				}
+			};
+			flushTimer.start();
+		}
+
+		private void showPending() {
+			if (pending.isEmpty() && dropped.get() == 0)
+				return;
+			StringBuilder chunk = new StringBuilder();
+			String text;
+			while ((text = pending.poll()) != null) {
+				pendingLength.addAndGet(-text.length());
+				chunk.append(text);
+			}
+			long droppedNow = dropped.getAndSet(0);
+			if (droppedNow > 0)
+				chunk.append("[" + droppedNow + " characters of output were dropped]\n");
+
+			// keeping only the last characters of the output, starting from a whole line
+			if (chunk.length() >= scrollback) {
+				int start = chunk.indexOf("\n", chunk.length() - scrollback);
+				output.setText(chunk.substring(start == -1 ? chunk.length() - scrollback : start + 1));
+			} else {
+				output.appendText(chunk.toString());
+				int excess = output.getLength() - scrollback;
+				if (excess > 0) {
+					int end = output.getText().indexOf('\n', excess);
+					output.deleteText(0, end == -1 ? excess : end + 1);
+				}
+			}
+		}
 	}
 
 	@Override
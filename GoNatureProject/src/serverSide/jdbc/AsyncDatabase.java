@@ -0,0 +1,271 @@
+package serverSide.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import common.communication.Communication;
+
+/**
+ * This class executes the queries of the DatabaseController asynchronously, on
+ * a dedicated pool of JDBC threads as large as the connection pool, so a
+ * running query never waits for a connection held by another one of them. Every
+ * query returns a CompletableFuture completed with the query's result, so
+ * several queries can be executed in parallel and their results composed. A
+ * query can be cancelled through its future or by its timeout: a waiting query
+ * is never executed, and a running query is cancelled on its statement. The
+ * queries are executed on the pool's connections, outside of any transaction of
+ * the submitting thread. Cancelling a write query or timing it out does not undo
+ * it, since it may have been committed before its statement was cancelled.
+ */
+public class AsyncDatabase {
+	private final DatabaseController database;
+	private final ThreadPoolExecutor executor;
+	private final ScheduledThreadPoolExecutor timer;
+	private static final int queueSize = 1000; // the queries waiting for a JDBC thread
+
+	// asynchronous queries statistics
+	private final AtomicLong completedQueries = new AtomicLong();
+	private final AtomicLong cancelledQueries = new AtomicLong();
+	private final AtomicLong timedOutQueries = new AtomicLong();
+	private final AtomicLong rejectedQueries = new AtomicLong();
+
+	/**
+	 * A query submitted to the JDBC threads, and the future of its result
+	 */
+	private class Query<T> extends CompletableFuture<T> implements Runnable {
+		private final Communication request;
+		private final Function<Communication, T> execution;
+		private Statement statement; // the running statement, guarded by the query
+
+		private Query(Communication request, Function<Communication, T> execution) {
+			this.request = request;
+			this.execution = execution;
+		}
+
+		@Override
+		public void run() {
+			if (isDone()) // cancelled or timed out while waiting
+				return;
+			database.setStatementListener(this::setStatement);
+			try {
+				if (complete(execution.apply(request)))
+					completedQueries.incrementAndGet();
+			} catch (RuntimeException e) {
+				completeExceptionally(e);
+			} finally {
+				database.setStatementListener(null);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean isCancelled = super.cancel(mayInterruptIfRunning);
+			if (isCancelled) {
+				cancelledQueries.incrementAndGet();
+				cancelStatement();
+			}
+			return isCancelled;
+		}
+
+		/**
+		 * This method fails the query after its timeout has passed
+		 *
+		 * @param timeout the timeout of the query, in milliseconds
+		 */
+		private void timeOut(long timeout) {
+			if (completeExceptionally(new TimeoutException(
+					"Communication Request no. " + request.getUniqueId() + " timed out after " + timeout + " ms"))) {
+				timedOutQueries.incrementAndGet();
+				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+						LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+						+ ": query timed out after " + timeout + " ms");
+				cancelStatement();
+			}
+		}
+
+		/**
+		 * This method is called by the DatabaseController with the statement of the
+		 * query before its execution, and with null after it, before its connection
+		 * is released to the pool. A query cancelled or timed out after a JDBC thread
+		 * took it, but before its statement was set, is not executed: cancelling a
+		 * statement which is not executing yet has no effect in the driver. A query
+		 * cancelled after its statement was set, but before the driver started
+		 * executing it, may still be executed
+		 *
+		 * @param statement the running statement, or null
+		 * @throws CancellationException if the query is done, so its statement must
+		 *                               not be executed
+		 */
+		private synchronized void setStatement(Statement statement) {
+			if (statement != null && isDone())
+				throw new CancellationException(
+						"Communication Request no. " + request.getUniqueId() + " was cancelled before its execution");
+			this.statement = statement;
+		}
+
+		/**
+		 * This method cancels the running statement of the query, if there is one.
+		 * The statement can't be released while it is cancelled, so the cancellation
+		 * never reaches a query of another request on the same connection
+		 */
+		private synchronized void cancelStatement() {
+			if (statement == null)
+				return;
+			try {
+				statement.cancel();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Constructor, called by the DatabaseController
+	 *
+	 * @param database the controller executing the queries
+	 * @param threads  the number of JDBC threads, as the size of the connection
+	 *                 pool
+	 */
+	AsyncDatabase(DatabaseController database, int threads) {
+		this.database = database;
+		AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize),
+				runnable -> new Thread(runnable, "jdbc-" + count.incrementAndGet()));
+		timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "jdbc-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true); // the timeouts of the completed queries are removed
+	}
+
+	/**
+	 * This method executes a SELECT query asynchronously
+	 *
+	 * @param request Communication request
+	 * @return a future completed with the result list, or with null if the query
+	 *         failed
+	 */
+	public CompletableFuture<ArrayList<Object[]>> executeSelectQuery(Communication request) {
+		return executeSelectQuery(request, 0);
+	}
+
+	/**
+	 * This method executes a SELECT query asynchronously, and fails it with a
+	 * TimeoutException if it was not completed in time
+	 *
+	 * @param request Communication request
+	 * @param timeout the timeout in milliseconds, 0 for none
+	 * @return a future completed with the result list, or with null if the query
+	 *         failed
+	 */
+	public CompletableFuture<ArrayList<Object[]>> executeSelectQuery(Communication request, long timeout) {
+		return submit(request, timeout, database::executeSelectQuery);
+	}
+
+	/**
+	 * This method executes an UPDATE query asynchronously
+	 *
+	 * @param request Communication request
+	 * @param timeout the timeout in milliseconds, 0 for none
+	 * @return a future completed with true if the query succeed, false if failed.
+	 *         If the future was cancelled or timed out, the query may still have
+	 *         been committed, so its result must be checked in the database
+	 */
+	public CompletableFuture<Boolean> executeUpdateQuery(Communication request, long timeout) {
+		return submit(request, timeout, database::executeUpdateQuery);
+	}
+
+	/**
+	 * This method executes an INSERT query asynchronously
+	 *
+	 * @param request Communication request
+	 * @param timeout the timeout in milliseconds, 0 for none
+	 * @return a future completed with true if the query succeed, false if failed.
+	 *         If the future was cancelled or timed out, the query may still have
+	 *         been committed, so its result must be checked in the database
+	 */
+	public CompletableFuture<Boolean> executeInsertQuery(Communication request, long timeout) {
+		return submit(request, timeout, database::executeInsertQuery);
+	}
+
+	/**
+	 * This method executes a DELETE query asynchronously
+	 *
+	 * @param request Communication request
+	 * @param timeout the timeout in milliseconds, 0 for none
+	 * @return a future completed with true if the query succeed, false if failed.
+	 *         If the future was cancelled or timed out, the query may still have
+	 *         been committed, so its result must be checked in the database
+	 */
+	public CompletableFuture<Boolean> executeDeleteQuery(Communication request, long timeout) {
+		return submit(request, timeout, database::executeDeleteQuery);
+	}
+
+	/**
+	 * This method submits a query to the JDBC threads. A query submitted while
+	 * all the threads are busy and the queue is full fails with a
+	 * RejectedExecutionException
+	 *
+	 * @param request   Communication request
+	 * @param timeout   the timeout in milliseconds, 0 for none
+	 * @param execution the execution of the request by the DatabaseController
+	 * @return the future of the query's result
+	 */
+	private <T> CompletableFuture<T> submit(Communication request, long timeout,
+			Function<Communication, T> execution) {
+		Query<T> query = new Query<>(request, execution);
+		try {
+			executor.execute(query);
+		} catch (RejectedExecutionException e) {
+			rejectedQueries.incrementAndGet();
+			query.completeExceptionally(e);
+			return query;
+		}
+		if (timeout > 0) {
+			ScheduledFuture<?> timeoutTask = timer.schedule(() -> query.timeOut(timeout), timeout,
+					TimeUnit.MILLISECONDS);
+			query.whenComplete((result, e) -> timeoutTask.cancel(false));
+		}
+		return query;
+	}
+
+	/**
+	 * This method stops the JDBC threads after the submitted queries were executed
+	 */
+	void shutdown() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(5, TimeUnit.SECONDS))
+				executor.shutdownNow();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		timer.shutdownNow();
+	}
+
+	/**
+	 * @return a summary of the asynchronous queries statistics
+	 */
+	public String getStatistics() {
+		return "Async queries: " + completedQueries.get() + " completed, " + cancelledQueries.get() + " cancelled, "
+				+ timedOutQueries.get() + " timed out, " + rejectedQueries.get() + " rejected, "
+				+ executor.getQueue().size() + " waiting";
+	}
+}
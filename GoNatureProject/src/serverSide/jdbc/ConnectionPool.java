@@ -0,0 +1,240 @@
+package serverSide.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class holds a bounded pool of connections to the MySQL database. Each
+ * request checks out a connection for its own use and returns it when done, so
+ * read queries run in parallel and transactions never share a connection with
+ * other queries.
+ */
+public class ConnectionPool {
+	private final String database;
+	private final Properties properties = new Properties();
+	private final int maximumSize;
+	private final long maximumWait; // in milliseconds
+	private final long leakThreshold; // in milliseconds
+	private static final int validationTimeout = 2; // in seconds
+	private static final int statementCacheSize = 64; // compiled statements kept for each connection
+	// the rows fetched at once by the selections, set by the "gonature.fetchSize"
+	// system property. by default all the rows are fetched at once, which is the
+	// fastest for the small results of most queries
+	private static final int fetchSize = Integer.getInteger("gonature.fetchSize", 0);
+
+	private final Semaphore permits; // one permit for each connection that can be checked out
+	private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+	private final HashMap<Connection, CheckOut> active = new HashMap<>();
+	private final HashMap<Connection, StatementCache> caches = new HashMap<>();
+
+	// pool statistics
+	private long checkOuts, totalWaitTime, timeOuts;
+
+	/**
+	 * A class for holding the details of a checked out connection
+	 */
+	private static class CheckOut {
+		private final long time = System.currentTimeMillis();
+		private final String thread = Thread.currentThread().getName();
+		private boolean reported;
+	}
+
+	/**
+	 * The constructor creates the pool and opens its first connection, in order to
+	 * validate the database details
+	 *
+	 * @param database      the local MySQL database path
+	 * @param root          the root name
+	 * @param password      the database password
+	 * @param maximumSize   the maximum number of open connections
+	 * @param maximumWait   the maximum time (in milliseconds) to wait for a free
+	 *                      connection
+	 * @param leakThreshold the time (in milliseconds) after which a checked out
+	 *                      connection is reported as a possible leak
+	 * @throws SQLException if the connection can't be established
+	 */
+	public ConnectionPool(String database, String root, String password, int maximumSize, long maximumWait,
+			long leakThreshold) throws SQLException {
+		this.database = database;
+		properties.setProperty("user", root);
+		properties.setProperty("password", password);
+		// compiling the statements once in the MySQL server, instead of every execution
+		properties.setProperty("useServerPrepStmts", "true");
+		// sending a batch of insertions as a single multi-row insertion
+		properties.setProperty("rewriteBatchedStatements", "true");
+		// the MySQL driver fetches the rows in parts only through a server cursor
+		if (fetchSize > 0)
+			properties.setProperty("useCursorFetch", "true");
+		this.maximumSize = maximumSize;
+		this.maximumWait = maximumWait;
+		this.leakThreshold = leakThreshold;
+		permits = new Semaphore(maximumSize, true);
+		idle.push(DriverManager.getConnection(database, properties));
+	}
+
+	/**
+	 * This method checks out a connection from the pool. If all the connections
+	 * are checked out, waits for one to be returned, up to the maximum wait time.
+	 *
+	 * @return a valid connection, in auto-commit mode
+	 * @throws SQLException if no connection was returned in time, or a new one
+	 *                      can't be established
+	 */
+	public Connection checkOut() throws SQLException {
+		long start = System.currentTimeMillis();
+		try {
+			if (!permits.tryAcquire(maximumWait, TimeUnit.MILLISECONDS)) {
+				synchronized (this) {
+					timeOuts++;
+				}
+				reportLeaks();
+				throw new SQLException("Timed out waiting for a database connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection");
+		}
+
+		try {
+			Connection conn;
+			synchronized (this) {
+				conn = idle.poll();
+			}
+			// validating the idle connection, and replacing it if it was closed
+			if (conn != null && !conn.isValid(validationTimeout)) {
+				closeQuietly(conn);
+				conn = null;
+			}
+			if (conn == null)
+				conn = DriverManager.getConnection(database, properties);
+
+			synchronized (this) {
+				active.put(conn, new CheckOut());
+				checkOuts++;
+				totalWaitTime += System.currentTimeMillis() - start;
+			}
+			return conn;
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * This method returns a checked out connection to the pool. If the connection
+	 * was left in the middle of a transaction, the transaction is rolled back.
+	 *
+	 * @param conn the connection to return
+	 */
+	public void checkIn(Connection conn) {
+		if (conn == null)
+			return;
+		synchronized (this) {
+			if (active.remove(conn) == null) // not checked out from this pool
+				return;
+		}
+		try {
+			if (!conn.getAutoCommit()) {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+			synchronized (this) {
+				idle.push(conn);
+			}
+		} catch (SQLException e) { // the connection is broken, not returning it
+			closeQuietly(conn);
+		}
+		permits.release();
+	}
+
+	/**
+	 * This method reports connections that were checked out for longer than the
+	 * leak threshold. Each connection is reported once.
+	 */
+	public synchronized void reportLeaks() {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<Connection, CheckOut> entry : active.entrySet()) {
+			CheckOut checkOut = entry.getValue();
+			if (!checkOut.reported && now - checkOut.time > leakThreshold) {
+				checkOut.reported = true;
+				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+						LocalTime.now().getSecond()) + ": Possible connection leak: checked out by "
+						+ checkOut.thread + " for " + (now - checkOut.time) / 1000 + " seconds");
+			}
+		}
+	}
+
+	/**
+	 * @param conn a checked out connection
+	 * @return the compiled statements cache of the connection
+	 */
+	public synchronized StatementCache getStatementCache(Connection conn) {
+		return caches.computeIfAbsent(conn, key -> new StatementCache(key, statementCacheSize, fetchSize));
+	}
+
+	/**
+	 * This method closes all the idle connections of the pool
+	 */
+	public synchronized void close() {
+		while (!idle.isEmpty())
+			closeQuietly(idle.poll());
+	}
+
+	private void closeQuietly(Connection conn) {
+		StatementCache cache;
+		synchronized (this) {
+			cache = caches.remove(conn);
+		}
+		if (cache != null)
+			cache.close();
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the number of checked out connections
+	 */
+	public synchronized int getActiveCount() {
+		return active.size();
+	}
+
+	/**
+	 * @return the number of open connections that are not checked out
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return the average time (in milliseconds) waited for a connection
+	 */
+	public synchronized double getAverageWaitTime() {
+		return checkOuts == 0 ? 0 : (double) totalWaitTime / checkOuts;
+	}
+
+	/**
+	 * @return a summary of the pool statistics
+	 */
+	public synchronized String getStatistics() {
+		long hits = 0, misses = 0;
+		for (StatementCache cache : caches.values()) {
+			hits += cache.getHits();
+			misses += cache.getMisses();
+		}
+		return "Connection pool: " + active.size() + " active, " + idle.size() + " idle (maximum " + maximumSize
+				+ "), " + checkOuts + " check outs, average wait " + String.format("%.2f", getAverageWaitTime())
+				+ " ms, " + timeOuts + " time outs, " + hits + " cached statements reused, " + misses
+				+ " compiled";
+	}
+}
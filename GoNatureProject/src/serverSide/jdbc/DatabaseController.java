@@ -1,19 +1,68 @@
 package serverSide.jdbc;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Types;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.function.Consumer;
 
 import common.communication.Communication;
 import common.communication.CommunicationException;
 
 public class DatabaseController {
-	private Connection conn;
+	private ConnectionPool pool;
+	private static final int poolSize = 10;
+	private static final long maximumWait = 5000; // in milliseconds
+	private static final long leakThreshold = 60000; // in milliseconds
+	private static final int batchSize = 500; // the queries sent together in a batch
+	// the retries of a transaction failed by a deadlock or a lock wait timeout, and
+	// the waits before them
+	private static final int transactionRetries = 3;
+	private static final long transactionBackoff = 50; // in milliseconds
+	private static final long maximumTransactionBackoff = 1000; // in milliseconds
+	private TransactionRetry transactionRetry = new TransactionRetry(transactionRetries, transactionBackoff,
+			maximumTransactionBackoff);
+	// the connection of a thread that turned the auto commit off, until it is
+	// turned back on
+	private ThreadLocal<Connection> session = new ThreadLocal<>();
+	// the rows and bytes read by the queries
+	private QueryStatistics statistics = new QueryStatistics();
+	// the listener of the statements executed by the calling thread, for cancelling
+	// them from another thread
+	private ThreadLocal<Consumer<Statement>> statementListener = new ThreadLocal<>();
+	// the executor of the asynchronous queries
+	private AsyncDatabase async;
+
+	/**
+	 * An interface for handing the chunks of a streamed SELECT query, while the
+	 * next rows are still read from the database
+	 */
+	public interface ChunkConsumer {
+		/**
+		 * @param chunk the next rows of the result set
+		 * @return true to continue reading, false to stop the query
+		 */
+		boolean accept(ArrayList<Object[]> chunk);
+	}
+
+	/**
+	 * An interface for the execution of a prepared statement. A result set opened
+	 * by the execution must be closed by it, the statement itself belongs to the
+	 * connection's statements cache, which closes it
+	 */
+	private interface Execution<T> {
+		T execute(PreparedStatement stmt) throws SQLException;
+	}
 
 	/**
 	 * The constructor establishes a connection to the local MySQL databse
@@ -33,22 +82,40 @@ public class DatabaseController {
 		}
 
 		try {
-			conn = DriverManager.getConnection(database, root, password);
+			pool = new ConnectionPool(database, root, password, poolSize, maximumWait, leakThreshold);
 		} catch (SQLException ex) {
 			System.out.println("Database connection failed to be established");
 			throw new DatabaseException("Can't establish connection to database");
 		}
+		async = new AsyncDatabase(this, poolSize);
 		System.out.println("Database connection established successfully");
 	}
 
 	/**
-	 * This methods toggles to auto-commit option of the database
+	 * This methods toggles to auto-commit option of the database. Turning it off
+	 * binds a connection of the pool to the calling thread, and all the thread's
+	 * queries are executed on it until the auto-commit is turned back on. Queries
+	 * of other threads are not affected.
 	 * 
 	 * @param toggle false "locks" the database, true "unlocks" the database
 	 * @throws SQLException
 	 */
 	public void toggleAutoCommit(boolean toggle) throws SQLException {
-		conn.setAutoCommit(toggle);
+		Connection conn = session.get();
+		if (!toggle) {
+			if (conn == null) {
+				conn = pool.checkOut();
+				session.set(conn);
+			}
+			conn.setAutoCommit(false);
+		} else if (conn != null) {
+			session.remove();
+			try {
+				conn.setAutoCommit(true);
+			} finally {
+				pool.checkIn(conn);
+			}
+		}
 		System.out
 				.println(toggle ? "Database is unlocked: auto commit is on" : "Database is locked: auto commit is off");
 	}
@@ -60,7 +127,9 @@ public class DatabaseController {
 	 * @throws SQLException
 	 */
 	public void rollback() throws SQLException {
-		conn.rollback();
+		Connection conn = session.get();
+		if (conn != null)
+			conn.rollback();
 	}
 
 	/**
@@ -70,42 +139,187 @@ public class DatabaseController {
 	 * @throws SQLException
 	 */
 	public void commit() throws SQLException {
-		conn.commit();
+		Connection conn = session.get();
+		if (conn != null)
+			conn.commit();
+	}
+
+	/**
+	 * @return a summary of the connection pool statistics
+	 */
+	public String getPoolStatistics() {
+		pool.reportLeaks();
+		return pool.getStatistics();
+	}
+
+	/**
+	 * @return a summary of the rows and bytes read by the queries
+	 */
+	public String getQueryStatistics() {
+		return statistics.getStatistics();
+	}
+
+	/**
+	 * @return a summary of the transactions' durations and retries
+	 */
+	public String getTransactionStatistics() {
+		return transactionRetry.getStatistics();
+	}
+
+	/**
+	 * @return the executor of the asynchronous queries, running on the connections
+	 *         of the pool
+	 */
+	public AsyncDatabase async() {
+		return async;
+	}
+
+	/**
+	 * This method closes the open connections to the database, after the submitted
+	 * asynchronous queries were executed
+	 */
+	public void closeConnections() {
+		async.shutdown();
+		pool.close();
+	}
+
+	/**
+	 * This method sets the listener of the statements executed by the calling
+	 * thread. The listener gets the statement before its execution, and null after
+	 * it, before the statement's connection is released. The listener can throw a
+	 * CancellationException before the execution, so the statement is not executed
+	 * 
+	 * @param listener the listener, null for removing it
+	 */
+	void setStatementListener(Consumer<Statement> listener) {
+		if (listener == null)
+			statementListener.remove();
+		else
+			statementListener.set(listener);
+	}
+
+	/**
+	 * @return the connection bound to the calling thread, or a connection checked
+	 *         out from the pool
+	 * @throws SQLException if no connection is available
+	 */
+	private Connection getConnection() throws SQLException {
+		Connection conn = session.get();
+		return conn != null ? conn : pool.checkOut();
+	}
+
+	/**
+	 * This method returns a connection to the pool, unless it is bound to the
+	 * calling thread
+	 * 
+	 * @param conn
+	 */
+	private void releaseConnection(Connection conn) {
+		if (conn != null && conn != session.get())
+			pool.checkIn(conn);
 	}
 
 	/**
 	 * This method gets an array list of communication requets. Executes these
-	 * requests as an atomic transaction.
+	 * requests as an atomic transaction. A savepoint is set after every batch of
+	 * the transaction, so a transaction failed by a lock wait timeout is retried
+	 * from its last savepoint, and a transaction failed by a deadlock is retried
+	 * from its start, after a random wait.
 	 * 
 	 * @param requests
 	 * @return true if all the requests executions succeeded, false otherwise
 	 */
 	public boolean executeTransaction(Communication transaction) {
 		boolean success = false;
-		int i = 0;
+		long start = System.nanoTime();
+		int retries = 0;
+		Connection conn;
+		try {
+			conn = pool.checkOut(); // the transaction is isolated on its own connection
+		} catch (SQLException e) {
+			System.out.println(
+					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+							+ ": Communication Request no. " + transaction.getUniqueId()
+							+ ": Transaction execution failed");
+			e.printStackTrace();
+			return false;
+		}
 		try {
 			conn.setAutoCommit(false); // disabling auto-commit to manage transactions manually
 			System.out.println(
 					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
 							+ ": Communication Request no. " + transaction.getUniqueId()
 							+ ": Initiating transaction execution");
-			for (i = 0; i < transaction.getRequestsList().size(); i++) {
-				Statement stmt = conn.createStatement();
-				stmt.executeUpdate(transaction.getRequestsList().get(i).combineQuery());
-				System.out.println("        "
-						+ LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
-								LocalTime.now().getSecond())
-						+ ": " + transaction.getRequestsList().get(i).getQueryType() + " query execution succeed");
-			}
+			List<Communication> requests = transaction.getRequestsList();
+			ArrayList<String> queries = new ArrayList<>();
+			ArrayList<ArrayList<Object>> parameters = new ArrayList<>();
+			compileBatch(requests, queries, parameters);
 
-			conn.commit(); // committing the transaction if all queries succeed
-			success = true;
+			// the consecutive queries of the same form are sent together
+			int next = 0, batches = 0;
+			Savepoint savepoint = null;
+			int savepointNext = 0; // the first request after the savepoint
+			while (!success) {
+				try {
+					while (next < requests.size()) {
+						next = executeBatch(conn, queries, parameters, next);
+						batches++;
+						if (next < requests.size()) {
+							if (savepoint != null)
+								conn.releaseSavepoint(savepoint);
+							savepoint = conn.setSavepoint();
+							savepointNext = next;
+						}
+					}
+					conn.commit(); // committing the transaction if all queries succeed
+					success = true;
+				} catch (SQLException e) {
+					TransactionRetry.Failure failure = TransactionRetry.classify(e);
+					if (!transactionRetry.isRetried(failure, retries))
+						throw e;
+					retries++;
+					// a lock wait timeout rolls back only the failed statement, so the statements
+					// of the failed batch are rolled back to the savepoint before it. If the
+					// savepoint was lost, the whole transaction is retried
+					boolean isSavepoint = false;
+					if (failure == TransactionRetry.Failure.LOCK_TIMEOUT && savepoint != null) {
+						try {
+							conn.rollback(savepoint);
+							isSavepoint = true;
+						} catch (SQLException ex) {
+							savepoint = null;
+						}
+					}
+					if (isSavepoint) {
+						next = savepointNext;
+					} else {
+						conn.rollback();
+						savepoint = null;
+						next = 0;
+					}
+					long wait = transactionRetry.retry(failure, retries, isSavepoint);
+					System.out.println("        "
+							+ LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+									LocalTime.now().getSecond())
+							+ ": " + failure + ", retry no. " + retries + " from "
+							+ (isSavepoint ? "query no. " + (next + 1) : "the start") + " in " + wait + " ms");
+					try {
+						Thread.sleep(wait);
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						throw e;
+					}
+				}
+			}
+			System.out.println("        "
+					+ LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+					+ ": " + requests.size() + " queries execution succeed, in " + batches + " batches");
 		} catch (SQLException | CommunicationException e) {
 			try {
 				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
 						LocalTime.now().getSecond()) + ": Communication Request no. " + transaction.getUniqueId()
 						+ ": Transaction execution failed");
-				System.out.println("        Caused by: " + transaction.getRequestsList().get(i).getQueryType());
+				System.out.println("        Caused by: " + e.getMessage());
 				conn.rollback(); // roll back the transaction on error
 			} catch (SQLException ex) {
 				ex.printStackTrace();
@@ -117,12 +331,14 @@ public class DatabaseController {
 			} catch (SQLException e) {
 				e.printStackTrace();
 			}
+			pool.checkIn(conn);
 		}
-		System.out.println(success
-				? LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
-						+ ": Transaction succeed"
-				: LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
-						+ ": Transaction failed");
+		long nanos = System.nanoTime() - start;
+		transactionRetry.recordTransaction(success, nanos);
+		System.out.println(
+				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+						+ (success ? ": Transaction succeed" : ": Transaction failed") + " in "
+						+ String.format("%.3f", nanos / 1000000.0) + " ms, after " + retries + " retries");
 		return success;
 	}
 
@@ -134,11 +350,81 @@ public class DatabaseController {
 	 * @return ArrayList<Object[]> representing the ResultSet
 	 */
 	public ArrayList<Object[]> executeSelectQuery(Communication request) {
-		Statement stmt;
+		try {
+			ArrayList<Object[]> resultList = execute(request, stmt -> {
+				try (ResultSet rs = stmt.executeQuery()) {
+					return resultSetToList(rs);
+				}
+			});
+			long bytes = QueryStatistics.sizeOf(resultList);
+			statistics.recordSelect(resultList.size(), bytes);
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+					+ ": SELECT query execution succeed (" + resultList.size() + " rows, " + bytes + " bytes)");
+			return resultList;
+		} catch (SQLException | CommunicationException e) {
+			System.out.println(
+					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+							+ ": Communication Request no. " + request.getUniqueId()
+							+ ": SELECT query execution failed");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Gets a communication request (of a SELECT query) and executes the query with
+	 * a forward-only cursor, so the result set is never held in memory as a whole.
+	 * Every full chunk of rows is handed to the consumer as soon as it is read, and
+	 * the remaining rows are returned.
+	 * 
+	 * @param request   Communication request
+	 * @param chunkRows the number of rows in a chunk
+	 * @param consumer  the consumer of the full chunks
+	 * @return the rows after the last full chunk, or null if the query failed or
+	 *         was stopped by the consumer
+	 */
+	public ArrayList<Object[]> executeSelectQuery(Communication request, int chunkRows, ChunkConsumer consumer) {
+		Connection conn = null;
+		PreparedStatement stmt = null;
 		ResultSet rs = null;
 		try {
-			stmt = conn.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE);
-			rs = stmt.executeQuery(request.combineQuery());
+			conn = getConnection();
+			ArrayList<Object> parameters = new ArrayList<>();
+			// not taken from the statements cache, since its fetch size is not the default
+			stmt = conn.prepareStatement(request.combinePreparedQuery(parameters), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(Integer.MIN_VALUE); // the MySQL driver reads the rows one by one
+			bind(stmt, parameters);
+			rs = stmt.executeQuery();
+
+			int columns = rs.getMetaData().getColumnCount();
+			int chunks = 0;
+			long rows = 0, bytes = 0;
+			ArrayList<Object[]> chunk = new ArrayList<>(chunkRows);
+			while (rs.next()) {
+				Object[] row = new Object[columns];
+				for (int i = 1; i <= columns; i++) {
+					row[i - 1] = rs.getObject(i);
+					bytes += QueryStatistics.sizeOf(row[i - 1]);
+				}
+				chunk.add(row);
+				rows++;
+				if (chunk.size() == chunkRows) {
+					chunks++;
+					if (!consumer.accept(chunk)) {
+						statistics.recordSelect(rows, bytes);
+						return null;
+					}
+					chunk = new ArrayList<>(chunkRows);
+				}
+			}
+			statistics.recordSelect(rows, bytes);
+			System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+					LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+					+ ": SELECT query streamed in " + (chunks + 1) + " chunks (" + rows + " rows, " + bytes
+					+ " bytes)");
+			return chunk;
 		} catch (SQLException | CommunicationException e) {
 			System.out.println(
 					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
@@ -146,25 +432,37 @@ public class DatabaseController {
 							+ ": SELECT query execution failed");
 			e.printStackTrace();
 			return null;
+		} finally {
+			try {
+				if (rs != null)
+					rs.close();
+				if (stmt != null)
+					stmt.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			releaseConnection(conn);
 		}
-		System.out.println(
-				LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
-						+ ": Communication Request no. " + request.getUniqueId() + ": SELECT query execution succeed");
-		return resultSetToList(rs);
 	}
 
 	/**
 	 * Gets a communication request (of an UPDATE query), executes the query and
-	 * returns a boolean value representing the result of the update
+	 * returns a boolean value representing the result of the update. An increment
+	 * with a limit fails if it updated no rows, since its limit did not hold
 	 * 
 	 * @param request Communication request
 	 * @return true if the query succeed, false if failed
 	 */
 	public boolean executeUpdateQuery(Communication request) {
-		Statement stmt;
 		try {
-			stmt = conn.createStatement();
-			stmt.executeUpdate(request.combineQuery());
+			int rows = execute(request, PreparedStatement::executeUpdate);
+			statistics.recordUpdate(rows);
+			if (rows == 0 && request.getIncrementColumn() != null && request.getIncrementLimit() != null) {
+				System.out.println(LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(),
+						LocalTime.now().getSecond()) + ": Communication Request no. " + request.getUniqueId()
+						+ ": UPDATE query exceeds the limit of " + request.getIncrementColumn());
+				return false;
+			}
 		} catch (SQLException | CommunicationException e) {
 			e.printStackTrace();
 			System.out.println(
@@ -187,10 +485,8 @@ public class DatabaseController {
 	 * @return true if the query succeed, false if failed
 	 */
 	public boolean executeInsertQuery(Communication request) {
-		Statement stmt;
 		try {
-			stmt = conn.createStatement();
-			stmt.executeUpdate(request.combineQuery());
+			statistics.recordUpdate(execute(request, PreparedStatement::executeUpdate));
 		} catch (SQLException | CommunicationException e) {
 			e.printStackTrace();
 			System.out.println(
@@ -213,10 +509,8 @@ public class DatabaseController {
 	 * @return true if the query succeed, false if failed
 	 */
 	public boolean executeDeleteQuery(Communication request) {
-		Statement stmt;
 		try {
-			stmt = conn.createStatement();
-			stmt.executeUpdate(request.combineQuery());
+			statistics.recordUpdate(execute(request, PreparedStatement::executeUpdate));
 		} catch (SQLException | CommunicationException e) {
 			e.printStackTrace();
 			System.out.println(
@@ -231,26 +525,198 @@ public class DatabaseController {
 		return true;
 	}
 
+	/**
+	 * Gets a list of communication requests (of UPDATE, INSERT or DELETE queries)
+	 * and executes them in batches: the consecutive requests of the same
+	 * parameterized query are sent together on a single statement, and a batch of
+	 * insertions is rewritten by the MySQL driver to a single multi-row insertion.
+	 * If the calling thread turned the auto-commit off, the requests are executed
+	 * on its connection, and a failed batch is rolled back with its transaction
+	 * 
+	 * @param requests the requests, executed by their order
+	 * @return true if all the requests succeeded, false otherwise
+	 */
+	public boolean executeBatch(List<Communication> requests) {
+		if (requests.isEmpty())
+			return true;
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			int batches = executeBatch(conn, requests);
+			System.out.println(
+					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+							+ ": " + requests.size() + " queries execution succeed, in " + batches + " batches");
+			return true;
+		} catch (SQLException | CommunicationException e) {
+			System.out.println(
+					LocalTime.of(LocalTime.now().getHour(), LocalTime.now().getMinute(), LocalTime.now().getSecond())
+							+ ": Batch execution of " + requests.size() + " queries failed");
+			e.printStackTrace();
+			return false;
+		} finally {
+			releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * This method executes the requests on a connection, grouping the consecutive
+	 * requests of the same parameterized query into batches
+	 * 
+	 * @param conn     the connection to execute the requests on
+	 * @param requests the requests, executed by their order
+	 * @return the number of batches sent to the database
+	 * @throws SQLException
+	 * @throws CommunicationException
+	 */
+	private int executeBatch(Connection conn, List<Communication> requests)
+			throws SQLException, CommunicationException {
+		ArrayList<String> queries = new ArrayList<>();
+		ArrayList<ArrayList<Object>> parameters = new ArrayList<>();
+		compileBatch(requests, queries, parameters);
+
+		int batches = 0;
+		for (int start = 0; start < requests.size(); start = executeBatch(conn, queries, parameters, start))
+			batches++;
+		return batches;
+	}
+
+	/**
+	 * This method compiles the requests' queries in their parameterized form
+	 * 
+	 * @param requests   the requests
+	 * @param queries    the list filled with the parameterized queries
+	 * @param parameters the list filled with the values of each query
+	 * @throws CommunicationException
+	 */
+	private void compileBatch(List<Communication> requests, ArrayList<String> queries,
+			ArrayList<ArrayList<Object>> parameters) throws CommunicationException {
+		for (Communication request : requests) {
+			ArrayList<Object> values = new ArrayList<>();
+			queries.add(request.combinePreparedQuery(values));
+			parameters.add(values);
+		}
+	}
+
+	/**
+	 * This method executes a single batch: the consecutive queries of the same form
+	 * as the query at the start, up to the batch size
+	 * 
+	 * @param conn       the connection to execute the queries on
+	 * @param queries    the parameterized queries
+	 * @param parameters the values of each query
+	 * @param start      the index of the batch's first query
+	 * @return the index of the first query after the batch
+	 * @throws SQLException
+	 */
+	private int executeBatch(Connection conn, ArrayList<String> queries, ArrayList<ArrayList<Object>> parameters,
+			int start) throws SQLException {
+		int end = start;
+		while (end < queries.size() && end - start < batchSize && queries.get(end).equals(queries.get(start)))
+			end++;
+		PreparedStatement stmt = pool.getStatementCache(conn).prepare(queries.get(start));
+		try {
+			for (int i = start; i < end; i++) {
+				bind(stmt, parameters.get(i));
+				stmt.addBatch();
+			}
+			long rows = 0;
+			// a rewritten batch reports its queries as succeeded, without their rows
+			for (int count : stmt.executeBatch())
+				rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+			statistics.recordUpdate(rows);
+		} finally {
+			stmt.clearBatch();
+		}
+		return end;
+	}
+
+	/**
+	 * This method executes a request on the calling thread's connection, or on a
+	 * connection checked out from the pool, which is returned after the execution
+	 * 
+	 * @param request   Communication request
+	 * @param execution the execution of the request's statement
+	 * @return the result of the execution
+	 * @throws SQLException
+	 * @throws CommunicationException
+	 */
+	private <T> T execute(Communication request, Execution<T> execution) throws SQLException, CommunicationException {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			PreparedStatement stmt = prepare(conn, request);
+			Consumer<Statement> listener = statementListener.get();
+			if (listener == null)
+				return execution.execute(stmt);
+			listener.accept(stmt); // throws if the statement must not be executed
+			try {
+				return execution.execute(stmt);
+			} finally {
+				listener.accept(null);
+			}
+		} finally {
+			releaseConnection(conn);
+		}
+	}
+
+	/**
+	 * This method compiles the request's query in its parameterized form, or takes
+	 * it from the connection's statements cache, and binds the request's values to
+	 * it
+	 * 
+	 * @param conn    the connection to execute the query on
+	 * @param request Communication request
+	 * @return the statement, ready for execution
+	 * @throws SQLException
+	 * @throws CommunicationException
+	 */
+	private PreparedStatement prepare(Connection conn, Communication request)
+			throws SQLException, CommunicationException {
+		ArrayList<Object> parameters = new ArrayList<>();
+		PreparedStatement stmt = pool.getStatementCache(conn).prepare(request.combinePreparedQuery(parameters));
+		bind(stmt, parameters);
+		return stmt;
+	}
+
+	/**
+	 * This method binds the values of a query to its statement
+	 * 
+	 * @param stmt       the statement of the query
+	 * @param parameters the values, by the order of their placeholders
+	 * @throws SQLException
+	 */
+	private void bind(PreparedStatement stmt, ArrayList<Object> parameters) throws SQLException {
+		for (int i = 0; i < parameters.size(); i++) {
+			Object value = parameters.get(i);
+			if (value == null)
+				stmt.setNull(i + 1, Types.NULL);
+			else if (value instanceof LocalDate)
+				stmt.setDate(i + 1, Date.valueOf((LocalDate) value));
+			else if (value instanceof LocalTime) // the seconds are not saved
+				stmt.setTime(i + 1, Time.valueOf(((LocalTime) value).withSecond(0).withNano(0)));
+			else if (value instanceof Number)
+				stmt.setObject(i + 1, value);
+			else
+				stmt.setString(i + 1, value.toString());
+		}
+	}
+
 	/**
 	 * This method gets a ResultSet object, runs over its columns and rows and
 	 * returns a Serializable ArrayList<Object[]> representing the ResultSet
 	 * 
 	 * @param rs the ResultSet sent from the executeSelectQuery method
 	 * @return an ArrayList of Object[] of the result set elements
+	 * @throws SQLException if the rows can't be read
 	 */
-	private ArrayList<Object[]> resultSetToList(ResultSet rs) {
-
+	private ArrayList<Object[]> resultSetToList(ResultSet rs) throws SQLException {
 		ArrayList<Object[]> resultList = new ArrayList<>();
-		try {
-			int columns = rs.getMetaData().getColumnCount();
-			while (rs.next()) { // while there are more rows to add to the list
-				Object[] row = new Object[columns];
-				for (int i = 1; i <= columns; i++)
-					row[i - 1] = rs.getObject(i);
-				resultList.add(row);
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
+		int columns = rs.getMetaData().getColumnCount();
+		while (rs.next()) { // while there are more rows to add to the list
+			Object[] row = new Object[columns];
+			for (int i = 1; i <= columns; i++)
+				row[i - 1] = rs.getObject(i);
+			resultList.add(row);
 		}
 		return resultList;
 	}
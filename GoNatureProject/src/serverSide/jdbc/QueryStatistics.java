@@ -0,0 +1,86 @@
+package serverSide.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts the rows read by the SELECT queries and their estimated
+ * size in bytes, and the rows changed by the other queries, for the server's
+ * statistics. The size of a row is estimated by the types of its values, as
+ * they are held in the server's memory before being sent to the client.
+ */
+public class QueryStatistics {
+	private final AtomicLong selects = new AtomicLong();
+	private final AtomicLong rowsRead = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong largestResult = new AtomicLong(); // in bytes
+	private final AtomicLong updates = new AtomicLong();
+	private final AtomicLong rowsChanged = new AtomicLong();
+
+	/**
+	 * @param value a value read from a result set
+	 * @return the estimated size of the value in bytes
+	 */
+	public static long sizeOf(Object value) {
+		if (value == null)
+			return 0;
+		if (value instanceof String)
+			return ((String) value).length();
+		if (value instanceof byte[])
+			return ((byte[]) value).length;
+		if (value instanceof Integer || value instanceof Float)
+			return 4;
+		if (value instanceof Short || value instanceof Byte || value instanceof Boolean)
+			return 1;
+		if (value instanceof BigDecimal)
+			return ((BigDecimal) value).unscaledValue().bitLength() / 8 + 1;
+		return 8; // longs, doubles, dates and times
+	}
+
+	/**
+	 * @param rows the rows read from a result set
+	 * @return the estimated size of the rows in bytes
+	 */
+	public static long sizeOf(ArrayList<Object[]> rows) {
+		long bytes = 0;
+		for (Object[] row : rows)
+			for (Object value : row)
+				bytes += sizeOf(value);
+		return bytes;
+	}
+
+	/**
+	 * This method counts an executed SELECT query
+	 *
+	 * @param rows  the number of rows read
+	 * @param bytes the estimated size of the rows
+	 */
+	public void recordSelect(long rows, long bytes) {
+		selects.incrementAndGet();
+		rowsRead.addAndGet(rows);
+		bytesRead.addAndGet(bytes);
+		largestResult.accumulateAndGet(bytes, Math::max);
+	}
+
+	/**
+	 * This method counts an executed UPDATE, INSERT or DELETE query
+	 *
+	 * @param rows the number of rows changed
+	 */
+	public void recordUpdate(long rows) {
+		updates.incrementAndGet();
+		rowsChanged.addAndGet(rows);
+	}
+
+	/**
+	 * @return a summary of the queries statistics
+	 */
+	public String getStatistics() {
+		long count = selects.get();
+		return "Queries: " + count + " selections read " + rowsRead.get() + " rows, " + bytesRead.get()
+				+ " bytes (average " + (count == 0 ? 0 : bytesRead.get() / count) + " bytes, largest "
+				+ largestResult.get() + " bytes), " + updates.get() + " updates changed " + rowsChanged.get()
+				+ " rows";
+	}
+}
@@ -0,0 +1,106 @@
+package serverSide.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class holds the compiled statements of a single connection, mapped by
+ * their parameterized query. The least recently used statement is closed when
+ * the cache is full, and all of them are closed with the connection. A
+ * connection is used by one thread at a time, so the cache is not
+ * synchronized.
+ */
+public class StatementCache {
+	private final Connection conn;
+	private final int fetchSize;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+	private long hits, misses;
+
+	/**
+	 * Constructor
+	 *
+	 * @param conn        the connection of the statements
+	 * @param maximumSize the maximum number of statements kept open
+	 * @param fetchSize   the number of rows fetched from the database at once by
+	 *                    the selections, 0 for fetching all the rows at once
+	 */
+	public StatementCache(Connection conn, int maximumSize, int fetchSize) {
+		this.conn = conn;
+		this.fetchSize = fetchSize;
+		statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > maximumSize) {
+					closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * This method returns the compiled statement of the query, compiling it only
+	 * if it is not in the cache
+	 *
+	 * @param query a parameterized query
+	 * @return the statement, ready for binding its parameters
+	 * @throws SQLException if the query can't be compiled
+	 */
+	public PreparedStatement prepare(String query) throws SQLException {
+		PreparedStatement stmt = statements.get(query);
+		if (stmt != null && !stmt.isClosed()) {
+			hits++;
+			stmt.clearParameters();
+			return stmt;
+		}
+		misses++;
+		if (query.startsWith("SELECT")) {
+			// the result sets are read once, from the first row to the last, so the driver
+			// does not keep them for scrolling or updating
+			stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (fetchSize > 0)
+				stmt.setFetchSize(fetchSize);
+		} else
+			stmt = conn.prepareStatement(query);
+		statements.put(query, stmt);
+		return stmt;
+	}
+
+	/**
+	 * This method closes all the statements of the cache
+	 */
+	public void close() {
+		for (PreparedStatement stmt : statements.values())
+			closeQuietly(stmt);
+		statements.clear();
+	}
+
+	private static void closeQuietly(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the number of queries found compiled in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of queries compiled
+	 */
+	public long getMisses() {
+		return misses;
+	}
+}
@@ -0,0 +1,127 @@
+package serverSide.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class decides which failures of a transaction are retried, how long to
+ * wait before retrying them, and counts the transactions' durations and retries
+ * for the server's statistics. A deadlock rolls back the whole transaction in
+ * the database, so it is retried from its start. A lock wait timeout rolls back
+ * only the failed statement, so the transaction is retried from its last
+ * savepoint. Any other failure is not retried.
+ */
+public class TransactionRetry {
+	/**
+	 * The kinds of transaction failures
+	 */
+	public enum Failure {
+		DEADLOCK, LOCK_TIMEOUT, PERMANENT
+	}
+
+	// the MySQL error codes of the transient failures
+	private static final int deadlockError = 1213;
+	private static final int lockWaitTimeoutError = 1205;
+	// the SQLState class of a transaction rolled back by the database
+	private static final String rollbackStateClass = "40";
+
+	private final int maximumRetries;
+	private final long backoff; // in milliseconds, the first retry's maximum wait
+	private final long maximumBackoff; // in milliseconds
+
+	// transactions statistics
+	private final AtomicLong committed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong deadlocks = new AtomicLong();
+	private final AtomicLong lockTimeouts = new AtomicLong();
+	private final AtomicLong savepointRetries = new AtomicLong(); // retried from a savepoint
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong longestNanos = new AtomicLong();
+
+	/**
+	 * Constructor
+	 *
+	 * @param maximumRetries the retries of a transaction before it fails
+	 * @param backoff        the maximum wait before the first retry, in
+	 *                       milliseconds, doubled for every retry
+	 * @param maximumBackoff the maximum wait before any retry, in milliseconds
+	 */
+	public TransactionRetry(int maximumRetries, long backoff, long maximumBackoff) {
+		this.maximumRetries = maximumRetries;
+		this.backoff = backoff;
+		this.maximumBackoff = maximumBackoff;
+	}
+
+	/**
+	 * This method classifies a failure of a transaction by its error code and its
+	 * SQLState, and by the ones of its causes
+	 *
+	 * @param e the exception thrown by the transaction
+	 * @return the kind of the failure
+	 */
+	public static Failure classify(SQLException e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (!(cause instanceof SQLException))
+				continue;
+			SQLException sqlCause = (SQLException) cause;
+			if (sqlCause.getErrorCode() == lockWaitTimeoutError)
+				return Failure.LOCK_TIMEOUT;
+			if (sqlCause.getErrorCode() == deadlockError || (sqlCause.getSQLState() != null
+					&& sqlCause.getSQLState().startsWith(rollbackStateClass)))
+				return Failure.DEADLOCK;
+		}
+		return Failure.PERMANENT;
+	}
+
+	/**
+	 * @param failure the kind of the failure
+	 * @param retries the retries of the transaction so far
+	 * @return true if the transaction should be retried
+	 */
+	public boolean isRetried(Failure failure, int retries) {
+		return failure != Failure.PERMANENT && retries < maximumRetries;
+	}
+
+	/**
+	 * This method counts a retry, and returns the wait before it. The wait is
+	 * random up to a bound doubled for every retry, so transactions which failed
+	 * on the same lock do not retry at the same time again
+	 *
+	 * @param failure     the kind of the failure
+	 * @param retry       the number of the retry, starting from 1
+	 * @param isSavepoint true if the transaction is retried from a savepoint
+	 * @return the wait before the retry, in milliseconds
+	 */
+	public long retry(Failure failure, int retry, boolean isSavepoint) {
+		(failure == Failure.DEADLOCK ? deadlocks : lockTimeouts).incrementAndGet();
+		if (isSavepoint)
+			savepointRetries.incrementAndGet();
+		long bound = Math.min(maximumBackoff, backoff << Math.min(retry - 1, 20));
+		return 1 + ThreadLocalRandom.current().nextLong(bound);
+	}
+
+	/**
+	 * This method counts a finished transaction
+	 *
+	 * @param isCommitted true if the transaction was committed
+	 * @param nanos       the duration of the transaction, with its retries
+	 */
+	public void recordTransaction(boolean isCommitted, long nanos) {
+		(isCommitted ? committed : failed).incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		longestNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * @return a summary of the transactions statistics
+	 */
+	public String getStatistics() {
+		long transactions = committed.get() + failed.get();
+		return "Transactions: " + committed.get() + " committed, " + failed.get() + " failed, retried after "
+				+ deadlocks.get() + " deadlocks and " + lockTimeouts.get() + " lock wait timeouts ("
+				+ savepointRetries.get() + " from a savepoint), average time "
+				+ String.format("%.3f", transactions == 0 ? 0 : totalNanos.get() / 1000000.0 / transactions)
+				+ " ms, longest " + String.format("%.3f", longestNanos.get() / 1000000.0) + " ms";
+	}
+}